@@ -0,0 +1,180 @@
+package chess.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks of the board hot paths, running the cases of the same name in {@code Benchmark}.
+ * <p>
+ * Every call runs {@link CaseState#OPS} operations and the time is reported per operation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(CaseState.OPS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class BoardBenchmarks {
+
+    public static class NewBoard extends CaseState {
+        public NewBoard() {
+            super("board.new");
+        }
+    }
+
+    /**
+     * Constructing a board in the start position.
+     */
+    @Benchmark
+    public long newBoard(NewBoard state) {
+        return state.run();
+    }
+
+    public static class Copy extends CaseState {
+        public Copy() {
+            super("board.copy");
+        }
+    }
+
+    /**
+     * Copying a board in mid game, as the parallel search does for every worker.
+     */
+    @Benchmark
+    public long copy(Copy state) {
+        return state.run();
+    }
+
+    public static class ToString extends CaseState {
+        public ToString() {
+            super("board.toString");
+        }
+    }
+
+    /**
+     * Rendering the board as a string.
+     */
+    @Benchmark
+    public long asString(ToString state) {
+        return state.run();
+    }
+
+    public static class Render extends CaseState {
+        public Render() {
+            super("board.render");
+        }
+    }
+
+    /**
+     * Rendering the board into a reused buffer.
+     */
+    @Benchmark
+    public long render(Render state) {
+        return state.run();
+    }
+
+    public static class RenderDiff extends CaseState {
+        public RenderDiff() {
+            super("board.renderDiff");
+        }
+    }
+
+    /**
+     * Redrawing only the cells a move changes.
+     */
+    @Benchmark
+    public long renderDiff(RenderDiff state) {
+        return state.run();
+    }
+
+    public static class TakeTurn extends CaseState {
+        public TakeTurn() {
+            super("board.takeTurn");
+        }
+    }
+
+    /**
+     * Validating and playing a pawn move with {@code takeTurn}, then taking it back.
+     */
+    @Benchmark
+    public long takeTurn(TakeTurn state) {
+        return state.run();
+    }
+
+    public static class TakeTurnAllTypes extends CaseState {
+        public TakeTurnAllTypes() {
+            super("board.takeTurn.allTypes");
+        }
+    }
+
+    /**
+     * Playing a move of every piece type with {@code takeTurn}.
+     */
+    @Benchmark
+    public long takeTurnAllTypes(TakeTurnAllTypes state) {
+        return state.run();
+    }
+
+    public static class Evaluate extends CaseState {
+        public Evaluate() {
+            super("board.evaluate");
+        }
+    }
+
+    /**
+     * Evaluating after a move, with the terms kept up to date by the move.
+     */
+    @Benchmark
+    public long evaluate(Evaluate state) {
+        return state.run();
+    }
+
+    public static class EvaluateFromScratch extends CaseState {
+        public EvaluateFromScratch() {
+            super("board.evaluateFromScratch");
+        }
+    }
+
+    /**
+     * Evaluating after a move from scratch.
+     */
+    @Benchmark
+    public long evaluateFromScratch(EvaluateFromScratch state) {
+        return state.run();
+    }
+
+    public static class SetFen extends CaseState {
+        public SetFen() {
+            super("board.setFen");
+        }
+    }
+
+    /**
+     * Parsing FEN positions in place.
+     */
+    @Benchmark
+    public long setFen(SetFen state) {
+        return state.run();
+    }
+
+    public static class ToFen extends CaseState {
+        public ToFen() {
+            super("board.toFen");
+        }
+    }
+
+    /**
+     * Formatting the position as FEN.
+     */
+    @Benchmark
+    public long toFen(ToFen state) {
+        return state.run();
+    }
+}
@@ -0,0 +1,47 @@
+package chess.benchmarks;
+
+import java.lang.reflect.Method;
+import java.util.function.IntToLongFunction;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * One case of the {@code Benchmark} class, looked up by name when a trial starts.
+ * <p>
+ * The engine lives in the default package, which JMH does not accept for benchmarks and which
+ * named packages cannot refer to, so the case body is fetched by reflection once and then
+ * called directly. Each benchmark method has its own subclass, so a run only builds the
+ * fixtures of the benchmarks it includes.
+ */
+@State(Scope.Thread)
+public abstract class CaseState {
+
+    // operations per benchmark call, a multiple of every cycle of inputs the cases step through
+    static final int OPS = 4096;
+
+    private final String name;
+    private IntToLongFunction body;
+
+    protected CaseState(String name) {
+        this.name = name;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws ReflectiveOperationException {
+        Method lookup = Class.forName("Benchmark").getDeclaredMethod("body", String.class);
+        lookup.setAccessible(true);
+        body = (IntToLongFunction) lookup.invoke(null, name);
+    }
+
+    /**
+     * Runs {@link #OPS} operations of the case.
+     *
+     * @return a value depending on the work done, returned to JMH so it cannot be optimised away
+     */
+    long run() {
+        return body.applyAsLong(OPS);
+    }
+}
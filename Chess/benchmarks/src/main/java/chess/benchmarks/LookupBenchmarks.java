@@ -0,0 +1,68 @@
+package chess.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks of the opening book and position index lookups.
+ * <p>
+ * Every call runs {@link CaseState#OPS} operations and the time is reported per operation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(CaseState.OPS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class LookupBenchmarks {
+
+    public static class BookFind extends CaseState {
+        public BookFind() {
+            super("book.find");
+        }
+    }
+
+    /**
+     * Finding positions in the opening book by key, half of them missing.
+     */
+    @Benchmark
+    public long bookFind(BookFind state) {
+        return state.run();
+    }
+
+    public static class BookMove extends CaseState {
+        public BookMove() {
+            super("book.move");
+        }
+    }
+
+    /**
+     * Picking a book move for a position.
+     */
+    @Benchmark
+    public long bookMove(BookMove state) {
+        return state.run();
+    }
+
+    public static class IndexLookup extends CaseState {
+        public IndexLookup() {
+            super("index.lookup");
+        }
+    }
+
+    /**
+     * Looking positions up in the position index and gathering their statistics.
+     */
+    @Benchmark
+    public long indexLookup(IndexLookup state) {
+        return state.run();
+    }
+}
@@ -0,0 +1,110 @@
+package chess.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks of each piece's {@code validMove}, asked about every pair of squares in turn.
+ * <p>
+ * Every call runs {@link CaseState#OPS} operations and the time is reported per operation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(CaseState.OPS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class PieceBenchmarks {
+
+    public static class Pawn extends CaseState {
+        public Pawn() {
+            super("pawn.validMove");
+        }
+    }
+
+    /**
+     * {@code Pawn.validMove}.
+     */
+    @Benchmark
+    public long pawn(Pawn state) {
+        return state.run();
+    }
+
+    public static class Rook extends CaseState {
+        public Rook() {
+            super("rook.validMove");
+        }
+    }
+
+    /**
+     * {@code Rook.validMove}.
+     */
+    @Benchmark
+    public long rook(Rook state) {
+        return state.run();
+    }
+
+    public static class Bishop extends CaseState {
+        public Bishop() {
+            super("bishop.validMove");
+        }
+    }
+
+    /**
+     * {@code Bishop.validMove}.
+     */
+    @Benchmark
+    public long bishop(Bishop state) {
+        return state.run();
+    }
+
+    public static class Queen extends CaseState {
+        public Queen() {
+            super("queen.validMove");
+        }
+    }
+
+    /**
+     * {@code Queen.validMove}.
+     */
+    @Benchmark
+    public long queen(Queen state) {
+        return state.run();
+    }
+
+    public static class King extends CaseState {
+        public King() {
+            super("king.validMove");
+        }
+    }
+
+    /**
+     * {@code King.validMove}.
+     */
+    @Benchmark
+    public long king(King state) {
+        return state.run();
+    }
+
+    public static class Horse extends CaseState {
+        public Horse() {
+            super("horse.validMove");
+        }
+    }
+
+    /**
+     * {@code Horse.validMove}.
+     */
+    @Benchmark
+    public long horse(Horse state) {
+        return state.run();
+    }
+}
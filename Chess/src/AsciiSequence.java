@@ -0,0 +1,57 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Read only {@code CharSequence} view of single byte (ASCII) text held in a {@code ByteBuffer}.
+ * <p>
+ * Lets text parsers such as {@link Board#setFen(CharSequence, int, int)} read straight from a
+ * file buffer or memory mapped file without decoding the bytes into a {@code String} first.
+ * Indices are absolute positions in the buffer, so one view can serve every record in it.
+ */
+public class AsciiSequence implements CharSequence {
+
+    private final ByteBuffer buffer;
+
+    /**
+     * Creates a view over the whole of a buffer, independent of its position and limit.
+     *
+     * @param buffer the bytes to view
+     */
+    AsciiSequence(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    @Override
+    public int length() {
+        return buffer.capacity();
+    }
+
+    @Override
+    public char charAt(int index) {
+        return (char) (buffer.get(index) & 0xFF);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString(start, end);
+    }
+
+    /**
+     * Decodes part of the buffer, only needed for messages.
+     *
+     * @param start the index of the first byte
+     * @param end   the index after the last byte
+     * @return the bytes as a string
+     */
+    String toString(int start, int end) {
+        StringBuilder text = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            text.append(charAt(i));
+        }
+        return text.toString();
+    }
+
+    @Override
+    public String toString() {
+        return toString(0, length());
+    }
+}
@@ -0,0 +1,210 @@
+/**
+ * Precomputed attack tables for every piece type, built once when the class is loaded.
+ * <p>
+ * Knights, kings and pawns attack a fixed set of squares, so their attacks are plain
+ * per square lookups. Sliding pieces (rooks, bishops and queens) use magic bitboards:
+ * the blockers on the relevant rays are multiplied by a per square magic number and the
+ * top bits of the product index a table holding the attacked squares for that exact
+ * blocker pattern. One query therefore costs a mask, a multiply, a shift and a table read
+ * instead of walking each ray square by square.
+ * <p>
+ * The magic numbers below were found with a seeded random search for multipliers that map
+ * every blocker pattern of a square to a slot without destructive collisions. Only the
+ * tables are filled at class load time.
+ */
+public final class Attacks {
+
+    // single square attacks
+    static final long[] HORSE = new long[64];
+    static final long[] KING = new long[64];
+
+    // pawn attacks indexed by colour (0 white, 1 black) then square
+    static final long[][] PAWN = new long[2][64];
+
+    // relevant blocker masks, magic multipliers, shifts and table offsets for sliders
+    private static final long[] ROOK_MASK = new long[64];
+    private static final long[] ROOK_MAGIC = {
+            0x0A80004000801220L, 0x8040004010002008L, 0x2080200010008008L, 0x1100100008210004L,
+            0xC200209084020008L, 0x2100010004000208L, 0x0400081000822421L, 0x0200010422048844L,
+            0x0800800080400024L, 0x0001402000401000L, 0x3000801000802001L, 0x4400800800100083L,
+            0x0904802402480080L, 0x4040800400020080L, 0x0018808042000100L, 0x4040800080004100L,
+            0x0040048001458024L, 0x00A0004000205000L, 0x3100808010002000L, 0x4825010010000820L,
+            0x5004808008000401L, 0x2024818004000A00L, 0x0005808002000100L, 0x2100060004806104L,
+            0x0080400880008421L, 0x4062220600410280L, 0x010A004A00108022L, 0x0000100080080080L,
+            0x0021000500080010L, 0x0044000202001008L, 0x0000100400080102L, 0xC020128200040545L,
+            0x0080002000400040L, 0x0000804000802004L, 0x0000120022004080L, 0x010A386103001001L,
+            0x9010080080800400L, 0x8440020080800400L, 0x0004228824001001L, 0x000000490A000084L,
+            0x0080002000504000L, 0x200020005000C000L, 0x0012088020420010L, 0x0010010080080800L,
+            0x0085001008010004L, 0x0002000204008080L, 0x0040413002040008L, 0x0000304081020004L,
+            0x0080204000800080L, 0x3008804000290100L, 0x1010100080200080L, 0x2008100208028080L,
+            0x5000850800910100L, 0x8402019004680200L, 0x0120911028020400L, 0x0000008044010200L,
+            0x0020850200244012L, 0x0020850200244012L, 0x0000102001040841L, 0x140900040A100021L,
+            0x000200282410A102L, 0x000200282410A102L, 0x000200282410A102L, 0x4048240043802106L
+    };
+    private static final int[] ROOK_SHIFT = new int[64];
+    private static final int[] ROOK_OFFSET = new int[64];
+    private static final long[] ROOK_TABLE;
+
+    private static final long[] BISHOP_MASK = new long[64];
+    private static final long[] BISHOP_MAGIC = {
+            0x40106000A1160020L, 0x0020010250810120L, 0x2010010220280081L, 0x002806004050C040L,
+            0x0002021018000000L, 0x2001112010000400L, 0x0881010120218080L, 0x1030820110010500L,
+            0x0000120222042400L, 0x2000020404040044L, 0x8000480094208000L, 0x0003422A02000001L,
+            0x000A220210100040L, 0x8004820202226000L, 0x0018234854100800L, 0x0100004042101040L,
+            0x0004001004082820L, 0x0010000810010048L, 0x1014004208081300L, 0x2080818802044202L,
+            0x0040880C00A00100L, 0x0080400200522010L, 0x0001000188180B04L, 0x0080249202020204L,
+            0x1004400004100410L, 0x00013100A0022206L, 0x2148500001040080L, 0x4241080011004300L,
+            0x4020848004002000L, 0x10101380D1004100L, 0x0008004422020284L, 0x01010A1041008080L,
+            0x0808080400082121L, 0x0808080400082121L, 0x0091128200100C00L, 0x0202200802010104L,
+            0x8C0A020200440085L, 0x01A0008080B10040L, 0x0889520080122800L, 0x100902022202010AL,
+            0x04081A0816002000L, 0x0000681208005000L, 0x8170840041008802L, 0x0A00004200810805L,
+            0x0830404408210100L, 0x2602208106006102L, 0x1048300680802628L, 0x2602208106006102L,
+            0x0602010120110040L, 0x0941010801043000L, 0x000040440A210428L, 0x0008240020880021L,
+            0x0400002012048200L, 0x00AC102001210220L, 0x0220021002009900L, 0x84440C080A013080L,
+            0x0001008044200440L, 0x0004C04410841000L, 0x2000500104011130L, 0x1A0C010011C20229L,
+            0x0044800112202200L, 0x0434804908100424L, 0x0300404822C08200L, 0x48081010008A2A80L
+    };
+    private static final int[] BISHOP_SHIFT = new int[64];
+    private static final int[] BISHOP_OFFSET = new int[64];
+    private static final long[] BISHOP_TABLE;
+
+    // sliding directions as (column, row) offsets
+    private static final int[][] ORTHOGONAL = {{0, 1}, {1, 0}, {0, -1}, {-1, 0}};
+    private static final int[][] DIAGONAL = {{1, 1}, {1, -1}, {-1, -1}, {-1, 1}};
+
+    static {
+        int[][] horseSteps = {{1, 2}, {2, 1}, {2, -1}, {1, -2}, {-1, -2}, {-2, -1}, {-2, 1}, {-1, 2}};
+        int[][] kingSteps = {{0, 1}, {1, 1}, {1, 0}, {1, -1}, {0, -1}, {-1, -1}, {-1, 0}, {-1, 1}};
+        for (int square = 0; square < 64; square++) {
+            HORSE[square] = steps(square, horseSteps);
+            KING[square] = steps(square, kingSteps);
+            PAWN[0][square] = steps(square, new int[][]{{-1, 1}, {1, 1}});
+            PAWN[1][square] = steps(square, new int[][]{{-1, -1}, {1, -1}});
+        }
+
+        ROOK_TABLE = initMagics(ORTHOGONAL, ROOK_MASK, ROOK_MAGIC, ROOK_SHIFT, ROOK_OFFSET);
+        BISHOP_TABLE = initMagics(DIAGONAL, BISHOP_MASK, BISHOP_MAGIC, BISHOP_SHIFT, BISHOP_OFFSET);
+    }
+
+    private Attacks() {
+    }
+
+    /**
+     * Returns the squares a rook on {@code square} attacks given the board occupancy.
+     * The first blocker in each direction is included, whichever colour it is.
+     *
+     * @param square   the square of the rook
+     * @param occupied the occupancy of the whole board
+     * @return the attacked squares
+     */
+    static long rook(int square, long occupied) {
+        int index = (int) (((occupied & ROOK_MASK[square]) * ROOK_MAGIC[square]) >>> ROOK_SHIFT[square]);
+        return ROOK_TABLE[ROOK_OFFSET[square] + index];
+    }
+
+    /**
+     * Returns the squares a bishop on {@code square} attacks given the board occupancy.
+     *
+     * @param square   the square of the bishop
+     * @param occupied the occupancy of the whole board
+     * @return the attacked squares
+     */
+    static long bishop(int square, long occupied) {
+        int index = (int) (((occupied & BISHOP_MASK[square]) * BISHOP_MAGIC[square]) >>> BISHOP_SHIFT[square]);
+        return BISHOP_TABLE[BISHOP_OFFSET[square] + index];
+    }
+
+    /**
+     * Returns the squares a queen on {@code square} attacks given the board occupancy.
+     *
+     * @param square   the square of the queen
+     * @param occupied the occupancy of the whole board
+     * @return the attacked squares
+     */
+    static long queen(int square, long occupied) {
+        return rook(square, occupied) | bishop(square, occupied);
+    }
+
+    /**
+     * Collects the squares reached by single steps from a square, ignoring steps off the board.
+     */
+    private static long steps(int square, int[][] steps) {
+        long mask = 0;
+        for (int[] step : steps) {
+            int col = (square & 7) + step[0];
+            int row = (square >> 3) + step[1];
+            if (col >= 0 && col <= 7 && row >= 0 && row <= 7) mask |= Bitboards.bit(Bitboards.square(col, row));
+        }
+        return mask;
+    }
+
+    /**
+     * Walks each direction from a square until the edge or a blocker, the slow reference used to fill the tables.
+     */
+    private static long slide(int square, long occupied, int[][] directions) {
+        long mask = 0;
+        for (int[] direction : directions) {
+            int col = (square & 7) + direction[0];
+            int row = (square >> 3) + direction[1];
+            while (col >= 0 && col <= 7 && row >= 0 && row <= 7) {
+                long bit = Bitboards.bit(Bitboards.square(col, row));
+                mask |= bit;
+                if ((occupied & bit) != 0) break;
+                col += direction[0];
+                row += direction[1];
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Squares whose occupancy can change the attacks from a square. The last square of each ray
+     * is left out because the ray stops there whether or not it is occupied.
+     */
+    private static long relevantMask(int square, int[][] directions) {
+        long mask = 0;
+        for (int[] direction : directions) {
+            int col = (square & 7) + direction[0];
+            int row = (square >> 3) + direction[1];
+            while (col + direction[0] >= 0 && col + direction[0] <= 7
+                    && row + direction[1] >= 0 && row + direction[1] <= 7) {
+                mask |= Bitboards.bit(Bitboards.square(col, row));
+                col += direction[0];
+                row += direction[1];
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Fills one flat attack table for a slider type from its magic numbers.
+     *
+     * @return the attack table, indexed by offset plus magic index
+     */
+    private static long[] initMagics(int[][] directions, long[] masks, long[] magics, int[] shifts, int[] offsets) {
+        int size = 0;
+        for (int square = 0; square < 64; square++) {
+            masks[square] = relevantMask(square, directions);
+            int bits = Long.bitCount(masks[square]);
+            shifts[square] = 64 - bits;
+            offsets[square] = size;
+            size += 1 << bits;
+        }
+
+        long[] table = new long[size];
+        for (int square = 0; square < 64; square++) {
+            // enumerate every subset of the relevant mask with the carry rippler trick
+            long subset = 0;
+            do {
+                int slot = offsets[square] + (int) ((subset * magics[square]) >>> shifts[square]);
+                long attacks = slide(square, subset, directions);
+                if (table[slot] != 0 && table[slot] != attacks) {
+                    throw new IllegalStateException("bad magic for square " + square);
+                }
+                table[slot] = attacks;
+                subset = (subset - masks[square]) & masks[square];
+            } while (subset != 0);
+        }
+        return table;
+    }
+}
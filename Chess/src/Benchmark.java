@@ -0,0 +1,503 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.IntToLongFunction;
+import java.util.function.Supplier;
+
+/**
+ * Microbenchmarks for the board and piece hot paths.
+ * <p>
+ * Each benchmark is warmed up until the JIT has compiled it, then timed over several fixed
+ * length iterations. The mean and standard deviation of the time per operation are printed
+ * so changes can be compared against a reproducible baseline. Results of every operation are
+ * folded into a volatile sink so the JIT cannot remove the measured work.
+ * <p>
+ * Run all benchmarks with {@code java Benchmark}, or only those whose name contains a
+ * filter with {@code java Benchmark <filter>}. Each case builds its fixtures when it is run,
+ * so a filtered run does not pay for the book or index of cases it leaves out. The FEN
+ * parser benchmark reads its corpus, one position per line, from the file named by the
+ * {@code fen.corpus} system property, or generates positions from random games when it is
+ * not set. The opening book benchmarks use the book named by the {@code book} property in
+ * the same way, and the position index benchmark the index named by the {@code index} property.
+ * <p>
+ * The same cases run under JMH, with forked JVMs and its own warmup and measurement control,
+ * from the module in {@code Chess/benchmarks}. JMH does not accept benchmarks in the default
+ * package, so its benchmark states create their cases by name with {@link #body(String)}.
+ */
+public class Benchmark {
+
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int MEASURED_ITERATIONS = 10;
+    private static final long ITERATION_NANOS = 200_000_000L;
+
+    // consumes benchmark results so the measured code is not optimised away
+    static volatile long sink;
+
+    /**
+     * One benchmarked operation, repeated {@code ops} times per call.
+     */
+    interface Case {
+        /**
+         * @param ops the number of operations to run
+         * @return a value depending on the work done, consumed by the sink
+         */
+        long run(int ops);
+    }
+
+    // every case by name, each created with its own fixtures only when it is run
+    private static final Map<String, Supplier<Case>> CASES = new LinkedHashMap<>();
+
+    static {
+        CASES.put("board.new", () -> ops -> {
+            long result = 0;
+            for (int i = 0; i < ops; i++) {
+                result += new Board().occupied;
+            }
+            return result;
+        });
+
+        // a board in mid game, copied as the parallel search does for every worker
+        CASES.put("board.copy", () -> {
+            Board copied = new Board();
+            copied.takeTurn(true, 'e', 2, 'e', 4);
+            copied.takeTurn(false, 'd', 7, 'd', 5);
+            return ops -> {
+                long result = 0;
+                for (int i = 0; i < ops; i++) {
+                    result += new Board(copied).hash;
+                }
+                return result;
+            };
+        });
+
+        CASES.put("board.toString", () -> {
+            Board rendered = new Board();
+            return ops -> {
+                long result = 0;
+                for (int i = 0; i < ops; i++) {
+                    result += rendered.toString().length();
+                }
+                return result;
+            };
+        });
+        CASES.put("board.render", () -> {
+            Board rendered = new Board();
+            BoardRenderer renderer = new BoardRenderer(false);
+            return ops -> {
+                long result = 0;
+                for (int i = 0; i < ops; i++) {
+                    result += renderer.render(rendered);
+                }
+                return result;
+            };
+        });
+
+        CASES.put("board.takeTurn", () -> {
+            Board played = new Board();
+            return ops -> {
+                long result = 0;
+                for (int i = 0; i < ops; i++) {
+                    if (played.takeTurn(true, 'e', 2, 'e', 4) == MoveStatus.LEGAL) result++;
+                    played.unmakeMove();
+                }
+                return result;
+            };
+        });
+
+        // one move of every piece type from an open position, exercising the type dispatch in takeTurn
+        String[] mixed = {"f1c4", "d1d3", "e1e2", "g1f3", "a2a3", "h1h3"};
+        CASES.put("board.takeTurn.allTypes", () -> {
+            Board open = openPosition();
+            return ops -> {
+                long result = 0;
+                for (int i = 0; i < ops; i++) {
+                    String move = mixed[i % mixed.length];
+                    if (open.takeTurn(true, move.charAt(0), move.charAt(1) - '0', move.charAt(2), move.charAt(3) - '0') == MoveStatus.LEGAL) {
+                        result++;
+                        open.unmakeMove();
+                    }
+                }
+                return result;
+            };
+        });
+
+        // redraws of the cells a move changes, alternating between the position before and after it
+        CASES.put("board.renderDiff", () -> {
+            Board open = openPosition();
+            BoardRenderer diffRenderer = new BoardRenderer(true);
+            int[] redrawn = new int[Board.MAX_MOVES];
+            int redrawnCount = open.generateMoves(true, redrawn);
+            diffRenderer.render(open);
+            return ops -> {
+                long result = 0;
+                for (int i = 0; i < ops; i++) {
+                    open.makeMove(redrawn[i % redrawnCount]);
+                    result += diffRenderer.render(open);
+                    open.unmakeMove();
+                    result += diffRenderer.render(open);
+                }
+                return result;
+            };
+        });
+
+        // evaluation after each move of the open position, kept up to date by the move or recomputed
+        CASES.put("board.evaluate", () -> {
+            Board open = openPosition();
+            int[] replies = new int[Board.MAX_MOVES];
+            int replyCount = open.generateMoves(true, replies);
+            return ops -> {
+                long result = 0;
+                for (int i = 0; i < ops; i++) {
+                    open.makeMove(replies[i % replyCount]);
+                    result += open.evaluate();
+                    open.unmakeMove();
+                }
+                return result;
+            };
+        });
+        CASES.put("board.evaluateFromScratch", () -> {
+            Board open = openPosition();
+            int[] replies = new int[Board.MAX_MOVES];
+            int replyCount = open.generateMoves(true, replies);
+            return ops -> {
+                long result = 0;
+                for (int i = 0; i < ops; i++) {
+                    open.makeMove(replies[i % replyCount]);
+                    result += open.evaluateFromScratch();
+                    open.unmakeMove();
+                }
+                return result;
+            };
+        });
+
+        CASES.put("board.setFen", () -> {
+            ByteBuffer corpus = fenCorpus();
+            int[] lineStarts = lineStarts(corpus);
+            AsciiSequence corpusText = new AsciiSequence(corpus);
+            Board parsed = new Board();
+            return ops -> {
+                long result = 0;
+                int lines = lineStarts.length - 1;
+                for (int i = 0; i < ops; i++) {
+                    int line = i % lines;
+                    parsed.setFen(corpusText, lineStarts[line], lineStarts[line + 1] - lineStarts[line] - 1);
+                    result += parsed.hash;
+                }
+                return result;
+            };
+        });
+        // the first position of the corpus
+        CASES.put("board.toFen", () -> {
+            ByteBuffer corpus = fenCorpus();
+            int[] lineStarts = lineStarts(corpus);
+            Board parsed = new Board();
+            parsed.setFen(new AsciiSequence(corpus), 0, lineStarts[1] - 1);
+            return ops -> {
+                long result = 0;
+                for (int i = 0; i < ops; i++) {
+                    result += parsed.toFen().length();
+                }
+                return result;
+            };
+        });
+
+        // book lookups by key and by position, half of them for positions missing from the book
+        CASES.put("book.find", () -> {
+            OpeningBook book = SampleBook.BOOK;
+            long[] keys = LookupPositions.KEYS;
+            return ops -> {
+                long result = 0;
+                for (int i = 0; i < ops; i++) {
+                    result += book.find(keys[i & (keys.length - 1)]);
+                }
+                return result;
+            };
+        });
+        CASES.put("book.move", () -> {
+            OpeningBook book = SampleBook.BOOK;
+            Board[] boards = LookupPositions.BOARDS;
+            Random random = new Random(17);
+            return ops -> {
+                long result = 0;
+                for (int i = 0; i < ops; i++) {
+                    result += book.move(boards[i & (boards.length - 1)], random);
+                }
+                return result;
+            };
+        });
+
+        // position index lookups of the same keys, gathering the move statistics of every hit
+        CASES.put("index.lookup", () -> {
+            PositionIndex index = sampleIndex();
+            PositionIndex.Stats stats = new PositionIndex.Stats();
+            long[] keys = LookupPositions.KEYS;
+            return ops -> {
+                long result = 0;
+                for (int i = 0; i < ops; i++) {
+                    if (index.lookup(keys[i & (keys.length - 1)], stats)) result += stats.moveCount;
+                }
+                return result;
+            };
+        });
+
+        addValidMove("pawn.validMove", Bitboards.PAWN);
+        addValidMove("rook.validMove", Bitboards.ROOK);
+        addValidMove("bishop.validMove", Bitboards.BISHOP);
+        addValidMove("queen.validMove", Bitboards.QUEEN);
+        addValidMove("king.validMove", Bitboards.KING);
+        addValidMove("horse.validMove", Bitboards.HORSE);
+    }
+
+    /**
+     * Positions early in random games and their keys, half of the keys random so they miss,
+     * shared by the book and index lookups and created when the first of them runs.
+     */
+    private static final class LookupPositions {
+        static final Board[] BOARDS = new Board[256];
+        static final long[] KEYS = new long[1024];
+
+        static {
+            Random random = new Random(17);
+            int[] gameMoves = new int[Board.MAX_MOVES];
+            for (int i = 0; i < BOARDS.length; i++) {
+                Board position = new Board();
+                int plies = random.nextInt(i % 2 == 0 ? 8 : 24);
+                for (int ply = 0; ply < plies; ply++) {
+                    int count = position.generateMoves(position.whiteToMove, gameMoves);
+                    if (count == 0) break;
+                    position.makeMove(gameMoves[random.nextInt(count)]);
+                }
+                BOARDS[i] = position;
+            }
+            for (int i = 0; i < KEYS.length; i++) {
+                KEYS[i] = i % 2 == 0 ? BOARDS[i % BOARDS.length].hash : random.nextLong();
+            }
+        }
+    }
+
+    /**
+     * The book shared by the book lookups, created when the first of them runs.
+     */
+    private static final class SampleBook {
+        static final OpeningBook BOOK = sampleBook();
+    }
+
+    /**
+     * Sets up the open position the move and evaluation benchmarks play from, a fresh board per case.
+     */
+    private static Board openPosition() {
+        Board open = new Board();
+        open.takeTurn(true, 'e', 2, 'e', 4);
+        open.takeTurn(false, 'e', 7, 'e', 5);
+        open.takeTurn(true, 'd', 2, 'd', 4);
+        open.takeTurn(false, 'd', 7, 'd', 5);
+        open.takeTurn(true, 'h', 2, 'h', 4);
+        open.takeTurn(false, 'h', 7, 'h', 5);
+        return open;
+    }
+
+    /**
+     * Registers a benchmark asking a piece about every source and destination square pair in turn.
+     */
+    private static void addValidMove(String name, int type) {
+        CASES.put(name, () -> {
+            Piece piece = Piece.of(type, true);
+            return ops -> {
+                long result = 0;
+                int pair = 0;
+                for (int i = 0; i < ops; i++) {
+                    int from = pair >> 6;
+                    int to = pair & 63;
+                    if (piece.validMove((char) ('a' + (from & 7)), (from >> 3) + 1,
+                            (char) ('a' + (to & 7)), (to >> 3) + 1)) result++;
+                    pair = (pair + 1) & 4095;
+                }
+                return result;
+            };
+        });
+    }
+
+    /**
+     * Loads the FEN corpus named by the {@code fen.corpus} property, or builds one from random games.
+     */
+    private static ByteBuffer fenCorpus() {
+        String path = System.getProperty("fen.corpus");
+        if (path != null) {
+            try {
+                return ByteBuffer.wrap(Files.readAllBytes(Path.of(path)));
+            } catch (IOException e) {
+                throw new IllegalStateException("cannot read FEN corpus " + path, e);
+            }
+        }
+        StringBuilder text = new StringBuilder();
+        Random random = new Random(11);
+        int[] moves = new int[Board.MAX_MOVES];
+        Board board = new Board();
+        for (int position = 0; position < 10_000; position++) {
+            if (position % 60 == 0) board.setBoard();
+            int count = board.generateMoves(board.whiteToMove, moves);
+            if (count == 0) {
+                board.setBoard();
+                count = board.generateMoves(board.whiteToMove, moves);
+            }
+            board.makeMove(moves[random.nextInt(count)]);
+            text.append(board.toFen()).append('\n');
+        }
+        return ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Opens the book named by the {@code book} property, or builds one from the first 16 plies of
+     * random games in a temporary file.
+     */
+    private static OpeningBook sampleBook() {
+        try {
+            String path = System.getProperty("book");
+            if (path != null) return new OpeningBook(Path.of(path));
+
+            StringBuilder games = new StringBuilder();
+            Random random = new Random(13);
+            int[] moves = new int[Board.MAX_MOVES];
+            Board board = new Board();
+            for (int game = 0; game < 20_000; game++) {
+                board.setBoard();
+                for (int ply = 0; ply < 16; ply++) {
+                    int count = board.generateMoves(board.whiteToMove, moves);
+                    if (count == 0) break;
+                    // favour the first moves so positions repeat across games as in a real book
+                    int move = moves[random.nextInt(Math.min(count, 1 + ply / 2))];
+                    board.makeMove(move);
+                    games.append(Move.toString(move)).append(' ');
+                }
+                games.append("new\n");
+            }
+            Path text = Files.createTempFile("book", ".txt");
+            Path file = Files.createTempFile("book", ".bin");
+            text.toFile().deleteOnExit();
+            file.toFile().deleteOnExit();
+            Files.writeString(text, games, StandardCharsets.US_ASCII);
+            OpeningBook.build(text, file, 16);
+            return new OpeningBook(file);
+        } catch (IOException e) {
+            throw new IllegalStateException("cannot create the benchmark book", e);
+        }
+    }
+
+    /**
+     * Opens the position index named by the {@code index} property, or builds one from random
+     * games journaled to a temporary file.
+     */
+    private static PositionIndex sampleIndex() {
+        try {
+            String path = System.getProperty("index");
+            if (path != null) return new PositionIndex(Path.of(path));
+
+            Path journal = Files.createTempFile("index", ".chj");
+            Path file = Files.createTempFile("index", ".idx");
+            journal.toFile().deleteOnExit();
+            file.toFile().deleteOnExit();
+            Random random = new Random(19);
+            int[] moves = new int[Board.MAX_MOVES];
+            Board board = new Board();
+            try (GameJournal games = new GameJournal(journal, Integer.MAX_VALUE)) {
+                for (int game = 0; game < 5_000; game++) {
+                    board.setBoard();
+                    games.newGame();
+                    for (int ply = 0; ply < 60; ply++) {
+                        int count = board.generateMoves(board.whiteToMove, moves);
+                        if (count == 0) break;
+                        // favour the first moves so positions repeat across games as in a real archive
+                        int move = moves[random.nextInt(Math.min(count, 1 + ply / 2))];
+                        board.makeMove(move);
+                        games.append(move, board);
+                    }
+                    games.endGame(random.nextInt(4));
+                }
+            }
+            PositionIndex.build(journal, file, 1);
+            return new PositionIndex(file);
+        } catch (IOException e) {
+            throw new IllegalStateException("cannot create the benchmark index", e);
+        }
+    }
+
+    /**
+     * Finds the start of every line in the corpus, plus one entry past the end.
+     */
+    private static int[] lineStarts(ByteBuffer corpus) {
+        int lines = 0;
+        for (int i = 0; i < corpus.capacity(); i++) {
+            if (corpus.get(i) == '\n') lines++;
+        }
+        int[] starts = new int[lines + 1];
+        int line = 1;
+        for (int i = 0; i < corpus.capacity() && line <= lines; i++) {
+            if (corpus.get(i) == '\n') starts[line++] = i + 1;
+        }
+        return starts;
+    }
+
+    /**
+     * Creates a benchmark case and its fixtures, for harnesses outside this package such as JMH.
+     *
+     * @param name the name of the case, such as {@code board.takeTurn}
+     * @return a function running the case the given number of times and returning a value to consume
+     * @throws IllegalArgumentException if there is no such case
+     */
+    static IntToLongFunction body(String name) {
+        Supplier<Case> factory = CASES.get(name);
+        if (factory == null) throw new IllegalArgumentException("no benchmark named " + name);
+        return factory.get()::run;
+    }
+
+    /**
+     * Runs the benchmarks.
+     *
+     * @param args an optional filter, only benchmarks whose name contains it are run
+     */
+    public static void main(String[] args) {
+        String filter = args.length > 0 ? args[0] : "";
+        for (Map.Entry<String, Supplier<Case>> entry : CASES.entrySet()) {
+            if (entry.getKey().contains(filter)) measure(entry.getKey(), entry.getValue().get());
+        }
+    }
+
+    /**
+     * Calibrates the number of operations per iteration, warms up, then times the measured iterations.
+     */
+    private static void measure(String name, Case body) {
+        int ops = 1;
+        while (true) {
+            long start = System.nanoTime();
+            sink += body.run(ops);
+            if (System.nanoTime() - start > ITERATION_NANOS / 10 || ops >= 1 << 30) break;
+            ops *= 2;
+        }
+        ops = (int) Math.min(1 << 30, (long) ops * 10);
+
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            sink += body.run(ops);
+        }
+
+        double[] nanosPerOp = new double[MEASURED_ITERATIONS];
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            long start = System.nanoTime();
+            sink += body.run(ops);
+            nanosPerOp[i] = (double) (System.nanoTime() - start) / ops;
+        }
+
+        double mean = 0;
+        for (double value : nanosPerOp) mean += value;
+        mean /= MEASURED_ITERATIONS;
+        double variance = 0;
+        for (double value : nanosPerOp) variance += (value - mean) * (value - mean);
+        double deviation = Math.sqrt(variance / (MEASURED_ITERATIONS - 1));
+
+        System.out.printf("%-24s %12.2f ns/op  +- %8.2f  (%,.0f ops/s)%n", name, mean, deviation, 1e9 / mean);
+    }
+}
@@ -13,7 +13,7 @@ public class Bishop extends Piece{
      * @param white {@code true} if the bishop is white, {@code false} if black
      */
     Bishop(boolean white){
-        super(true, white);
+        super(true, white, Bitboards.BISHOP);
     }
 
     /**
@@ -47,9 +47,6 @@ public class Bishop extends Piece{
      */
     @Override
     public String toString() {
-        String colour;
-        if (this.white) colour = "W";
-        else colour = "B";
-        return colour + "B";
+        return white ? "WB" : "BB";
     }
 }
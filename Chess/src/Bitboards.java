@@ -0,0 +1,127 @@
+/**
+ * Constants and helpers for the 64-bit bitboard representation used by {@code Board}.
+ * <p>
+ * Each square of the board maps to one bit of a {@code long}. Squares are numbered
+ * from a1 = 0 to h8 = 63, so {@code square = row * 8 + col} using the same zero based
+ * column and row indices as the {@code Piece[][]} grid in {@code Board}.
+ * <p>
+ * The board keeps one bitboard per piece type and colour. The piece type constants
+ * below, combined with the colour, give the index of that bitboard.
+ */
+public final class Bitboards {
+
+    // piece type codes carried by each Piece, also used to index the per type bitboards
+    static final int PAWN = 0;
+    static final int HORSE = 1;
+    static final int BISHOP = 2;
+    static final int ROOK = 3;
+    static final int QUEEN = 4;
+    static final int KING = 5;
+
+    // number of piece types per colour
+    static final int TYPES = 6;
+
+    /**
+     * Squares strictly between two squares sharing a row, column or diagonal.
+     * Entries for squares that do not share a line are empty.
+     */
+    static final long[][] BETWEEN = new long[64][64];
+
+    /**
+     * The whole row, column or diagonal through two squares, from edge to edge and including both.
+     * Entries for squares that do not share a line are empty. A pinned piece can only move along
+     * the line through itself and its king.
+     */
+    static final long[][] LINE = new long[64][64];
+
+    static {
+        for (int from = 0; from < 64; from++) {
+            for (int to = 0; to < 64; to++) {
+                BETWEEN[from][to] = ray(from, to);
+                LINE[from][to] = line(from, to);
+            }
+        }
+    }
+
+    private Bitboards() {
+    }
+
+    /**
+     * Converts zero based column and row indices to a square number.
+     *
+     * @param colIndex the column index (0 for 'a' to 7 for 'h')
+     * @param rowIndex the row index (0 for row 1 to 7 for row 8)
+     * @return the square number between 0 and 63
+     */
+    static int square(int colIndex, int rowIndex) {
+        return rowIndex * 8 + colIndex;
+    }
+
+    /**
+     * Returns a bitboard with only the given square set.
+     *
+     * @param square the square number between 0 and 63
+     * @return the single bit mask for the square
+     */
+    static long bit(int square) {
+        return 1L << square;
+    }
+
+    /**
+     * Returns the index of the bitboard holding pieces of the given type and colour.
+     *
+     * @param type  the piece type code, e.g. {@link #ROOK}
+     * @param white {@code true} for white pieces, {@code false} for black
+     * @return the bitboard index between 0 and 11
+     */
+    static int index(int type, boolean white) {
+        return type * 2 + (white ? 0 : 1);
+    }
+
+    /**
+     * Walks from one square to both edges of the board in the direction of another square.
+     *
+     * @param from the square the line passes through
+     * @param to   a second square on the line
+     * @return every square of the line, or 0 if the squares do not share a line
+     */
+    private static long line(int from, int to) {
+        int horizontal = (to & 7) - (from & 7);
+        int vertical = (to >> 3) - (from >> 3);
+        if (from == to) return 0;
+        if (horizontal != 0 && vertical != 0 && Math.abs(horizontal) != Math.abs(vertical)) return 0;
+
+        int colStep = Integer.signum(horizontal);
+        int rowStep = Integer.signum(vertical);
+        long mask = bit(from);
+        for (int direction = -1; direction <= 1; direction += 2) {
+            int col = (from & 7) + colStep * direction;
+            int row = (from >> 3) + rowStep * direction;
+            for (; col >= 0 && col < 8 && row >= 0 && row < 8; col += colStep * direction, row += rowStep * direction) {
+                mask |= bit(square(col, row));
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Walks from one square towards another and collects the squares passed over.
+     *
+     * @param from the starting square
+     * @param to   the destination square
+     * @return the squares strictly between, or 0 if the squares do not share a line
+     */
+    private static long ray(int from, int to) {
+        int horizontal = (to & 7) - (from & 7);
+        int vertical = (to >> 3) - (from >> 3);
+        if (from == to) return 0;
+        if (horizontal != 0 && vertical != 0 && Math.abs(horizontal) != Math.abs(vertical)) return 0;
+
+        int step = Integer.signum(vertical) * 8 + Integer.signum(horizontal);
+        long mask = 0;
+        for (int square = from + step; square != to; square += step) {
+            mask |= bit(square);
+        }
+        return mask;
+    }
+}
@@ -1,4 +1,5 @@
-import java.util.StringJoiner;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 /**
  * Manages the state of the chessboard.
@@ -6,6 +7,9 @@ import java.util.StringJoiner;
  * The board manages the movement of pieces by validating moves at both the board and piece level.
  * It ensures moves are within the boundaries of the board and adhere to the rules for each piece type.
  * It also provides methods to initialize the board, print its current state, and attempt moves.
+ * <p>
+ * Alongside the grid of pieces the board keeps a bitboard for each piece type and colour
+ * (see {@link Bitboards}), so collision checks are single mask operations on the occupancy.
  *
  * EXAMPLE: initial state printed to terminal
  * First character represents Black 'B' or White 'W'
@@ -26,6 +30,65 @@ public class Board {
     // 8x8 chess board represented as a 2D array of Piece objects
     Piece[][] board;
 
+    // one bitboard per piece type and colour, indexed by Bitboards.index(type, white)
+    long[] pieces = new long[12];
+
+    // occupancy masks for each colour (0 white, 1 black) and for the whole board
+    long[] colours = new long[2];
+    long occupied;
+
+    // side to move, flipped each time a move is applied
+    boolean whiteToMove = true;
+
+    // Zobrist hash of the position, kept up to date by every move (see Zobrist)
+    long hash;
+
+    // middlegame and endgame scores from white's side and the game phase, kept up to date
+    // by every move like the hash (see PieceSquareTables)
+    int midgame;
+    int endgame;
+    int phase;
+
+    // upper bound on the number of moves in any position, used to size move buffers
+    static final int MAX_MOVES = 256;
+
+    // material values in centipawns indexed by piece type, the king is never traded so it has none
+    static final int[] PIECE_VALUES = {100, 320, 330, 500, 900, 0};
+
+    // scratch move list for single move lookups
+    private final int[] lookupMoves = new int[MAX_MOVES];
+
+    // pawns that have not moved yet and may still advance two squares
+    long unmovedPawns;
+
+    // undo stack, one entry per move made, holding what unmakeMove needs to restore
+    int ply;
+    private int[] undoMove = new int[256];
+    private Piece[] undoCaptured = new Piece[256];
+    private long[] undoUnmovedPawns = new long[256];
+    private long[] undoHash = new long[256];
+    private boolean[] undoAttacksValid = new boolean[256];
+    private long[] undoEnemyAttacks = new long[256];
+    private long[] undoCheckers = new long[256];
+    private long[] undoPinned = new long[256];
+
+    // attack maps of the side to move, computed on first use in a position and then cached,
+    // makeMove pushes them onto the undo stack so unmakeMove gets them back without a rescan
+    private boolean attacksValid;
+    // squares attacked by the opponent, with sliders seeing through the own king
+    private long enemyAttacks;
+    // opponent pieces giving check
+    private long checkers;
+    // own pieces pinned to the king, each can only move along the line through it and the king
+    private long pinned;
+
+    // full move number of the position the board was set up from, used by toFen()
+    private int firstFullMove = 1;
+    private boolean blackMovedFirst;
+
+    // FEN letters indexed by piece type, white upper case and black lower case
+    private static final String FEN_PIECES = "PNBRQK";
+
     /**
      * Constructor initializes an 8x8 board and populates it with pieces in their starting positions.
      * Calls {@link #setBoard()} to set up the initial state of the game.
@@ -38,230 +101,940 @@ public class Board {
         // for ASCII chars a-h
         for (int col = 0; col < 8; col++) {
             for (int row = 0; row < 8; row++) {
-                board[col][row] = new Piece();
+                board[col][row] = Piece.EMPTY;
             }
         }
 
         this.setBoard();
     }
 
+    /**
+     * Copy constructor creating an independent board in the same state as {@code other}.
+     * The undo history is copied too, so repetitions of earlier positions are still detected
+     * and moves made before the copy can be unmade on it.
+     * <p>
+     * Pieces hold no per game state and are shared, so the copy is a handful of array clones.
+     *
+     * @param other the board to copy
+     */
+    Board(Board other) {
+        board = new Piece[8][];
+        for (int col = 0; col < 8; col++) {
+            board[col] = other.board[col].clone();
+        }
+        ply = other.ply;
+        undoMove = other.undoMove.clone();
+        undoCaptured = other.undoCaptured.clone();
+        undoUnmovedPawns = other.undoUnmovedPawns.clone();
+        undoHash = other.undoHash.clone();
+        undoAttacksValid = other.undoAttacksValid.clone();
+        undoEnemyAttacks = other.undoEnemyAttacks.clone();
+        undoCheckers = other.undoCheckers.clone();
+        undoPinned = other.undoPinned.clone();
+        attacksValid = other.attacksValid;
+        enemyAttacks = other.enemyAttacks;
+        checkers = other.checkers;
+        pinned = other.pinned;
+        firstFullMove = other.firstFullMove;
+        blackMovedFirst = other.blackMovedFirst;
+        pieces = other.pieces.clone();
+        colours = other.colours.clone();
+        occupied = other.occupied;
+        unmovedPawns = other.unmovedPawns;
+        whiteToMove = other.whiteToMove;
+        hash = other.hash;
+        midgame = other.midgame;
+        endgame = other.endgame;
+        phase = other.phase;
+    }
+
     /**
      * Populates the board with the initial chess pieces in their starting positions.
      */
     public void setBoard() {
         // for columns 1-8
         for (int col = 0; col < 8; col++) {
+            // rows 3-6 start empty, clearing any game previously played on this board
+            for (int row = 2; row < 6; row++) {
+                board[col][row] = Piece.EMPTY;
+            }
+
             // for rows 1-2 (White set up)
             for (int row = 0; row < 2; row++) {
                 // create and set white pawns
                 if (row == 1) {
-                    board[col][row] = new Pawn( true);
+                    board[col][row] = Piece.of(Bitboards.PAWN, true);
                 }
 
                 // row == 0 set rest of white pieces
                 else {
                     if (col == 0 | col == 7) {
-                        board[col][row] = new Rook(true);
+                        board[col][row] = Piece.of(Bitboards.ROOK, true);
                     } else if (col == 1 | col == 6) {
-                        board[col][row] = new Horse(true);
+                        board[col][row] = Piece.of(Bitboards.HORSE, true);
                     } else if (col == 2 | col == 5) {
-                        board[col][row] = new Bishop(true);
+                        board[col][row] = Piece.of(Bitboards.BISHOP, true);
                     } else if (col == 3) {
-                        board[col][row] = new Queen(true);
-                    } else board[col][row] = new King(true);
+                        board[col][row] = Piece.of(Bitboards.QUEEN, true);
+                    } else board[col][row] = Piece.of(Bitboards.KING, true);
                 }
             }
 
             // black set up
             for (int row = 6; row < 8; row++) {
                 if (row == 6) {
-                    board[col][row] = new Pawn(false);
+                    board[col][row] = Piece.of(Bitboards.PAWN, false);
                 } else {
                     if (col == 0 | col == 7) {
-                        board[col][row] = new Rook(false);
+                        board[col][row] = Piece.of(Bitboards.ROOK, false);
                     } else if (col == 1 | col == 6) {
-                        board[col][row] = new Horse(false);
+                        board[col][row] = Piece.of(Bitboards.HORSE, false);
                     } else if (col == 2 | col == 5) {
-                        board[col][row] = new Bishop(false);
+                        board[col][row] = Piece.of(Bitboards.BISHOP, false);
                     } else if (col == 3) {
-                        board[col][row] = new Queen(false);
-                    } else board[col][row] = new King(false);
+                        board[col][row] = Piece.of(Bitboards.QUEEN, false);
+                    } else board[col][row] = Piece.of(Bitboards.KING, false);
+                }
+            }
+        }
+        syncBitboards();
+        unmovedPawns = pieces[Bitboards.index(Bitboards.PAWN, true)] | pieces[Bitboards.index(Bitboards.PAWN, false)];
+        whiteToMove = true;
+        hash = computeHash();
+        computeEvaluation();
+        attacksValid = false;
+        ply = 0;
+        firstFullMove = 1;
+        blackMovedFirst = false;
+    }
+
+    /**
+     * Creates a board from a position in Forsyth-Edwards Notation.
+     *
+     * @param fen The position, e.g. {@code "rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b - - 0 1"}.
+     * @return A new board holding the position.
+     * @throws IllegalArgumentException if the text is not a valid FEN position.
+     */
+    public static Board fromFen(CharSequence fen) {
+        Board board = new Board();
+        board.setFen(fen, 0, fen.length());
+        return board;
+    }
+
+    /**
+     * Replaces the position on this board with one read from {@code length} characters of
+     * {@code fen} starting at {@code offset}. The characters are read in place, so a large
+     * corpus can be parsed one slice at a time without creating strings.
+     * <p>
+     * Castling and en passant fields are accepted but ignored, as those moves are not part of
+     * the rules on this board. Pawns on their starting row are given their two square first move.
+     * Each side must have exactly one king, and the side to move must not be able to capture the
+     * other king. The move history is cleared. A rejected position leaves the board unchanged.
+     *
+     * @param fen    The text holding the position.
+     * @param offset The index of the first character of the position.
+     * @param length The number of characters belonging to the position.
+     * @throws IllegalArgumentException if the text is not a valid FEN position or the position is illegal.
+     */
+    public void setFen(CharSequence fen, int offset, int length) {
+        int end = offset + length;
+        int i = offset;
+        // the position is read into its own grid and only replaces this board's once it is valid
+        Piece[][] placed = new Piece[8][8];
+        for (Piece[] column : placed) {
+            Arrays.fill(column, Piece.EMPTY);
+        }
+
+        // piece placement, from row 8 down to row 1
+        int col = 0;
+        int row = 7;
+        for (; i < end && fen.charAt(i) != ' '; i++) {
+            char c = fen.charAt(i);
+            if (c == '/') {
+                if (col != 8 || row == 0) throw badFen(fen, offset, length);
+                col = 0;
+                row--;
+            } else if (c >= '1' && c <= '8') {
+                col += c - '0';
+                if (col > 8) throw badFen(fen, offset, length);
+            } else {
+                int type = FEN_PIECES.indexOf(Character.toUpperCase(c));
+                if (type < 0 || col > 7) throw badFen(fen, offset, length);
+                boolean white = c < 'a';
+                placed[col][row] = Piece.of(type, white);
+                col++;
+            }
+        }
+        if (col != 8 || row != 0 || i + 1 >= end) throw badFen(fen, offset, length);
+
+        // side to move
+        char side = fen.charAt(++i);
+        if (side != 'w' && side != 'b') throw badFen(fen, offset, length);
+        boolean white = side == 'w';
+        i++;
+
+        // skip castling, en passant and the half move clock, then read the full move number
+        int fullMove = 1;
+        for (int field = 0; field < 4 && i < end; field++) {
+            while (i < end && fen.charAt(i) == ' ') i++;
+            int value = 0;
+            for (; i < end && fen.charAt(i) != ' '; i++) {
+                char c = fen.charAt(i);
+                value = c >= '0' && c <= '9' ? value * 10 + c - '0' : value;
+            }
+            if (field == 3 && value > 0) fullMove = value;
+        }
+
+        swapGrid(placed);
+        syncBitboards();
+        // the rules assume one king a side, and a king left in check with the other side to move cannot arise
+        long whiteKings = pieces[Bitboards.index(Bitboards.KING, true)];
+        long blackKings = pieces[Bitboards.index(Bitboards.KING, false)];
+        if (Long.bitCount(whiteKings) != 1 || Long.bitCount(blackKings) != 1
+                || (attacks(white) & (white ? blackKings : whiteKings)) != 0) {
+            // put the previous position back, its hash and evaluation were never touched
+            swapGrid(placed);
+            syncBitboards();
+            throw badFen(fen, offset, length);
+        }
+        whiteToMove = white;
+        // pawns on their starting rows have not moved
+        unmovedPawns = pieces[Bitboards.index(Bitboards.PAWN, true)] & 0xFF00L
+                | pieces[Bitboards.index(Bitboards.PAWN, false)] & 0xFF000000000000L;
+        hash = computeHash();
+        computeEvaluation();
+        attacksValid = false;
+        ply = 0;
+        firstFullMove = fullMove;
+        blackMovedFirst = !whiteToMove;
+    }
+
+    /**
+     * Formats the position in Forsyth-Edwards Notation.
+     * <p>
+     * No castling or en passant moves exist on this board and no half move clock is kept,
+     * so those fields are always {@code "- - 0"}.
+     *
+     * @return The position as a FEN string.
+     */
+    public String toFen() {
+        StringBuilder fen = new StringBuilder(90);
+        for (int row = 7; row >= 0; row--) {
+            int empty = 0;
+            for (int col = 0; col < 8; col++) {
+                Piece piece = board[col][row];
+                if (!piece.alive) {
+                    empty++;
+                    continue;
                 }
+                if (empty > 0) fen.append((char) ('0' + empty));
+                empty = 0;
+                char letter = FEN_PIECES.charAt(piece.type);
+                fen.append(piece.white ? letter : Character.toLowerCase(letter));
+            }
+            if (empty > 0) fen.append((char) ('0' + empty));
+            if (row > 0) fen.append('/');
+        }
+        fen.append(whiteToMove ? " w - - 0 " : " b - - 0 ");
+        fen.append(firstFullMove + (ply + (blackMovedFirst ? 1 : 0)) / 2);
+        return fen.toString();
+    }
+
+    /**
+     * Exchanges the pieces on this board with those of {@code grid}, square by square.
+     */
+    private void swapGrid(Piece[][] grid) {
+        for (int col = 0; col < 8; col++) {
+            for (int row = 0; row < 8; row++) {
+                Piece piece = board[col][row];
+                board[col][row] = grid[col][row];
+                grid[col][row] = piece;
+            }
+        }
+    }
+
+    private static IllegalArgumentException badFen(CharSequence fen, int offset, int length) {
+        return new IllegalArgumentException("invalid FEN: " + fen.subSequence(offset, offset + length));
+    }
+
+    /**
+     * Computes the Zobrist hash of the position from scratch.
+     * <p>
+     * Only needed when a position is set up, after that {@link #makeMove(int)} and
+     * {@link #unmakeMove()} keep {@link #hash} up to date incrementally.
+     *
+     * @return The hash of the current piece placement and side to move.
+     */
+    long computeHash() {
+        long key = whiteToMove ? 0 : Zobrist.BLACK_TO_MOVE;
+        for (int index = 0; index < 12; index++) {
+            long remaining = pieces[index];
+            while (remaining != 0) {
+                key ^= Zobrist.PIECE_SQUARE[index][Long.numberOfTrailingZeros(remaining)];
+                remaining &= remaining - 1;
+            }
+        }
+        return key;
+    }
+
+    /**
+     * Computes the middlegame and endgame scores and the game phase from the bitboards.
+     * <p>
+     * Only needed when a position is set up, like {@link #computeHash()}.
+     */
+    private void computeEvaluation() {
+        midgame = 0;
+        endgame = 0;
+        phase = 0;
+        for (int index = 0; index < 12; index++) {
+            long remaining = pieces[index];
+            while (remaining != 0) {
+                int square = Long.numberOfTrailingZeros(remaining);
+                remaining &= remaining - 1;
+                midgame += PieceSquareTables.MIDGAME[index][square];
+                endgame += PieceSquareTables.ENDGAME[index][square];
+                phase += PieceSquareTables.PHASE[index >> 1];
+            }
+        }
+    }
+
+    /**
+     * Checks whether the current position already occurred earlier in the move history
+     * with the same side to move, by comparing hashes on the undo stack.
+     *
+     * @return {@code true} if the position is a repetition.
+     */
+    public boolean isRepetition() {
+        for (int i = ply - 2; i >= 0; i -= 2) {
+            if (undoHash[i] == hash) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Rebuilds the bitboards and occupancy masks from the {@code Piece[][]} grid.
+     */
+    private void syncBitboards() {
+        Arrays.fill(pieces, 0);
+        colours[0] = 0;
+        colours[1] = 0;
+        for (int col = 0; col < 8; col++) {
+            for (int row = 0; row < 8; row++) {
+                Piece piece = board[col][row];
+                int type = piece.type;
+                if (type < 0) continue;
+                long bit = Bitboards.bit(Bitboards.square(col, row));
+                pieces[Bitboards.index(type, piece.white)] |= bit;
+                colours[piece.white ? 0 : 1] |= bit;
             }
         }
+        occupied = colours[0] | colours[1];
     }
 
     /**
      * Formats the current state of the board into a string for printing.
      * <p>
      * The board is represented as a grid, where rows and columns are labeled,
-     * and each cell contains a chess piece or is empty.
+     * and each cell contains a chess piece or is empty. The text is drawn by a
+     * {@link BoardRenderer}, which callers printing many boards should reuse instead.
      *
      * @return A string representing the board state.
      */
     @Override
     public String toString() {
-        StringJoiner status = new StringJoiner("\n");
-        status.add("  |a ||b ||c ||d ||e ||f ||g ||h |");
-        status.add("  |------------------------------|");
-        for (int row = 7; row >= 0; row--) {
-            StringBuilder rowString = new StringBuilder();
-            rowString.append(row + 1).append(" ");
-            for (int col = 0; col < 8; col++) {
-                rowString.append("|").append(board[col][row].toString()).append("|");
-            }
-            status.add(rowString.toString());
-        }
-        return status.toString();
+        BoardRenderer renderer = new BoardRenderer(false);
+        return new String(renderer.buffer(), 0, renderer.render(this), StandardCharsets.US_ASCII);
     }
 
     /**
      * Attempts to move a piece on the board, checking if the move is valid according to the rules of chess.
      * <p>
-     * It first validates that the piece exists, is the correct color, and that the destination is valid.
-     * Then, it checks for collisions and special movement rules (e.g., for pawns and knights).
-     * If the move is valid, the piece is moved, and the method returns {@code true}.
+     * The move is checked by {@link #validate(boolean, int)}. If it is legal the piece is moved and
+     * {@link MoveStatus#LEGAL} is returned, otherwise the board is unchanged and the reason is returned.
+     * Nothing is printed: announcing check, checkmate or stalemate is left to the caller, see
+     * {@link #inCheck()} and {@link #hasLegalMove()}.
      *
      * @param white    A boolean indicating whether it's white's turn.
      * @param col      The character representing the current column of the piece.
      * @param row      The integer representing the current row of the piece.
      * @param destCol  The character representing the destination column.
      * @param destRow  The integer representing the destination row.
-     * @return {@code true} if the move was successful, {@code false} otherwise.
+     * @return {@link MoveStatus#LEGAL} if the move was made, otherwise the reason it was rejected.
+     */
+    public MoveStatus takeTurn(boolean white, char col, int row, char destCol, int destRow) {
+        // no need to check if dest on board as ChessCLI validates all user input.
+        int from = Bitboards.square(col - 'a', row - 1);
+        int to = Bitboards.square(destCol - 'a', destRow - 1);
+        MoveStatus status = validate(white, Move.encode(from, to, 0));
+        if (status != MoveStatus.LEGAL) return status;
+
+        int flags = 0;
+        if ((occupied & Bitboards.bit(to)) != 0) flags |= Move.CAPTURE;
+        if (board[from & 7][from >> 3].type == Bitboards.PAWN && Math.abs((to >> 3) - (from >> 3)) == 2) flags |= Move.DOUBLE_PUSH;
+        makeMove(Move.encode(from, to, flags));
+        return MoveStatus.LEGAL;
+    }
+
+    /**
+     * Checks a move against the rules without making it or printing anything.
+     * <p>
+     * It first validates that the piece exists, is the correct color, and that the destination is valid.
+     * Then, it checks for collisions and special movement rules (e.g., for pawns and knights),
+     * and that the move does not leave the player's own king in check. Only the cached attack maps
+     * may be filled in, so the position is the same afterwards.
+     *
+     * @param white {@code true} if the move is made by white.
+     * @param move  The move, only its source and destination squares are read, see {@link Move}.
+     * @return {@link MoveStatus#LEGAL}, or the first rule the move breaks.
      */
-    public boolean takeTurn(boolean white, char col, int row, char destCol, int destRow) {
-        // Convert char columns 'a'-'h' to indices 0-7
-        int colIndex = col-97;
-        int destColIndex = destCol-97;
-        int rowIndex = row-1;
-        int destRowIndex = destRow-1;
+    MoveStatus validate(boolean white, int move) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int colIndex = from & 7;
+        int rowIndex = from >> 3;
+        int destColIndex = to & 7;
+        int destRowIndex = to >> 3;
 
         Piece selected = board[colIndex][rowIndex];
 
         // Check if there's an active piece at the selected location
-        if (!selected.alive) {
-            System.out.println("no piece at location");
-            return false;
-        }
+        if (!selected.alive) return MoveStatus.NO_PIECE;
 
         // Check if it's the correct color's turn
-        else if (selected.white != white) {
-            System.out.println("incorrect colour");
-            return false;
-        }
-
-        // no need to check if dest on board as ChessCLI validates all user input.
-        // TODO: maybe add bounds checks anyway?
+        if (selected.white != white) return MoveStatus.WRONG_COLOUR;
 
         // check if valid move for selected piece type
-        if (!selected.validMove(col,row,destCol, destRow)) {
-            System.out.println("piece cannot reach location");
-            return false;
-        }
-
+        char col = (char) ('a' + colIndex);
+        char destCol = (char) ('a' + destColIndex);
+        boolean reachable = selected.type == Bitboards.PAWN
+                ? ((Pawn) selected).validMove(col, rowIndex + 1, destCol, destRowIndex + 1, (unmovedPawns & Bitboards.bit(from)) != 0)
+                : selected.validMove(col, rowIndex + 1, destCol, destRowIndex + 1);
+        if (!reachable) return MoveStatus.UNREACHABLE;
 
         // Handle collision checks based on piece type
         int vertical = destRowIndex - rowIndex;
         int horizontal = destColIndex - colIndex;
 
-        switch (selected.getClass().getName()) {
-            case "Horse", "King" -> {} // not possible to collide without attacking piece
-            case "Pawn" -> {
-                if(selected.white){
-                    // white increasing vertical val
-                    if(horizontal == 0) { // not a attack
-                        for(int i = 1; i <= vertical; i++){
-                            if(board[colIndex][rowIndex+i].alive) {
-                                System.out.println("piece blocking path");
-                                return false;
-                            }
-                        }
-                    } else { // attack move
-                        if(!board[destColIndex][destRowIndex].alive) {
-                            System.out.println("no piece for pawn to attack at location");
-                            return false;
-                        }
-                    }
-                } else {
-                    // negative vertical movement
-                    if(horizontal == 0) { // not a attack
-                        for(int i = -1; i >= vertical; i--){
-                            if(board[colIndex][rowIndex+i].alive) {
-                                System.out.println("piece blocking path");
-                                return false;
-                            }
-                        }
-                    } else { // attack move
-                        if(!board[destColIndex][destRowIndex].alive) {
-                            System.out.println("no piece for pawn to attack at location");
-                            return false;
-                        }
-                    }
+        switch (selected.type) {
+            case Bitboards.PAWN -> {
+                if(horizontal == 0) { // not a attack, every square up to and including dest must be empty
+                    if(((Bitboards.BETWEEN[from][to] | Bitboards.bit(to)) & occupied) != 0) return MoveStatus.BLOCKED;
+                } else { // attack move
+                    if((occupied & Bitboards.bit(to)) == 0) return MoveStatus.NO_PAWN_TARGET;
                 }
             }
-
-            case "Rook" -> {
-                if (!goodOrthogonalMove(colIndex,rowIndex,vertical,horizontal)) {
-                    System.out.println("No movement for rook");
-                    return false;
-                }
+            case Bitboards.ROOK -> {
+                if (!goodOrthogonalMove(colIndex,rowIndex,vertical,horizontal)) return MoveStatus.BLOCKED;
+            }
+            case Bitboards.BISHOP -> {
+                if(!goodDiagonalMove(colIndex,rowIndex,vertical,horizontal)) return MoveStatus.BLOCKED;
             }
+            case Bitboards.QUEEN -> {
+                boolean clear = Math.abs(vertical) == Math.abs(horizontal)
+                        ? goodDiagonalMove(colIndex,rowIndex,vertical,horizontal)
+                        : goodOrthogonalMove(colIndex, rowIndex, vertical, horizontal);
+                if (!clear) return MoveStatus.BLOCKED;
+            }
+            default -> {} // horses and kings cannot collide without attacking the piece
+        }
+
+        // is friendly fire?
+        if ((colours[white ? 0 : 1] & Bitboards.bit(to)) != 0) return MoveStatus.OWN_PIECE;
+
+        // the move may not leave the mover's own king in check
+        if (!isLegal(white, from, to)) return MoveStatus.KING_IN_CHECK;
 
-            case "Bishop" -> {
-                if(!goodDiagonalMove(colIndex,rowIndex,vertical,horizontal)) {
-                        System.out.println("No movement for Bishop");
-                        return false;
+        return MoveStatus.LEGAL;
+    }
+
+    /**
+     * Validates a batch of candidate moves for one side in a single call, see {@link #validate(boolean, int)}.
+     *
+     * @param white    {@code true} if the moves are made by white.
+     * @param moves    The encoded moves.
+     * @param count    The number of moves to validate from the start of {@code moves}.
+     * @param statuses Receives the {@link MoveStatus} ordinal of each move, at least {@code count} long.
+     * @return The number of legal moves.
+     */
+    int validateAll(boolean white, int[] moves, int count, byte[] statuses) {
+        int legal = 0;
+        for (int i = 0; i < count; i++) {
+            MoveStatus status = validate(white, moves[i]);
+            statuses[i] = (byte) status.ordinal();
+            if (status == MoveStatus.LEGAL) legal++;
+        }
+        return legal;
+    }
+
+    /**
+     * Applies an already validated move to the grid and the bitboards and passes the turn.
+     * <p>
+     * Everything needed to reverse the move is pushed onto the undo stack, so a matching
+     * {@link #unmakeMove()} restores the previous position exactly. No objects are allocated
+     * unless the undo stack has to grow past its preallocated size.
+     *
+     * @param move The encoded move, see {@link Move}.
+     */
+    public void makeMove(int move) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        Piece selected = board[from & 7][from >> 3];
+        Piece captured = board[to & 7][to >> 3];
 
+        if (ply == undoMove.length) growUndoStack();
+        undoMove[ply] = move;
+        undoCaptured[ply] = captured;
+        undoUnmovedPawns[ply] = unmovedPawns;
+        undoHash[ply] = hash;
+        undoAttacksValid[ply] = attacksValid;
+        undoEnemyAttacks[ply] = enemyAttacks;
+        undoCheckers[ply] = checkers;
+        undoPinned[ply] = pinned;
+        attacksValid = false;
+        ply++;
+
+        // empty current location and place selected at destination
+        board[from & 7][from >> 3] = Piece.EMPTY;
+        board[to & 7][to >> 3] = selected;
+        updateBitboards(selected, captured, from, to);
+
+        // a pawn that moves or is captured loses its first move
+        unmovedPawns &= ~(Bitboards.bit(from) | Bitboards.bit(to));
+        if (whiteToMove == selected.white) hash ^= Zobrist.BLACK_TO_MOVE;
+        whiteToMove = !selected.white;
+    }
+
+    /**
+     * Reverses the last move made with {@link #makeMove(int)}, restoring any captured piece,
+     * the pawn first move flag and the side to move.
+     */
+    public void unmakeMove() {
+        ply--;
+        int move = undoMove[ply];
+        int from = Move.from(move);
+        int to = Move.to(move);
+        Piece selected = board[to & 7][to >> 3];
+        Piece captured = undoCaptured[ply];
+        undoCaptured[ply] = null;
+
+        board[from & 7][from >> 3] = selected;
+        board[to & 7][to >> 3] = captured;
+        restoreBitboards(selected, captured, from, to);
+
+        unmovedPawns = undoUnmovedPawns[ply];
+        whiteToMove = selected.white;
+        hash = undoHash[ply];
+        attacksValid = undoAttacksValid[ply];
+        enemyAttacks = undoEnemyAttacks[ply];
+        checkers = undoCheckers[ply];
+        pinned = undoPinned[ply];
+    }
+
+    /**
+     * Doubles the capacity of the undo stack, only needed for games longer than the initial size.
+     */
+    private void growUndoStack() {
+        int size = undoMove.length * 2;
+        undoMove = Arrays.copyOf(undoMove, size);
+        undoCaptured = Arrays.copyOf(undoCaptured, size);
+        undoUnmovedPawns = Arrays.copyOf(undoUnmovedPawns, size);
+        undoHash = Arrays.copyOf(undoHash, size);
+        undoAttacksValid = Arrays.copyOf(undoAttacksValid, size);
+        undoEnemyAttacks = Arrays.copyOf(undoEnemyAttacks, size);
+        undoCheckers = Arrays.copyOf(undoCheckers, size);
+        undoPinned = Arrays.copyOf(undoPinned, size);
+    }
+
+    /**
+     * Generates every legal move the given side can make under the rules enforced by {@link #takeTurn}.
+     * <p>
+     * The board is not modified and nothing is printed. Moves are written to the caller supplied
+     * buffer in the encoding described by {@link Move}. Moves that would leave the side's own king
+     * in check are never generated: the attack maps of the position (see {@link #updateAttacks})
+     * limit the king to unattacked squares, other pieces to blocking or capturing a single checker,
+     * and pinned pieces to the line through their king. No moves are made to test legality.
+     * A side without a king, which can only come from a set up position, has no moves.
+     *
+     * @param white {@code true} to generate white's moves, {@code false} for black.
+     * @param moves The buffer receiving the moves, at least {@link #MAX_MOVES} long.
+     * @return The number of moves written to {@code moves}, 0 on checkmate or stalemate.
+     */
+    public int generateMoves(boolean white, int[] moves) {
+        int side = white ? 0 : 1;
+        long kings = pieces[Bitboards.index(Bitboards.KING, white)];
+        if (kings == 0) return 0;
+        int king = Long.numberOfTrailingZeros(kings);
+        ensureAttacks(white);
+
+        long own = colours[side];
+        long enemy = colours[side ^ 1];
+        int count = addMoves(king, Attacks.KING[king] & ~own & ~enemyAttacks, enemy, moves, 0);
+
+        // in double check only the king can move
+        if (Long.bitCount(checkers) > 1) return count;
+
+        // in single check the other pieces must capture the checker or block its line
+        long targets = ~own;
+        if (checkers != 0) {
+            targets = checkers | Bitboards.BETWEEN[king][Long.numberOfTrailingZeros(checkers)];
+        }
+
+        long remaining = own & ~kings;
+        while (remaining != 0) {
+            int from = Long.numberOfTrailingZeros(remaining);
+            remaining &= remaining - 1;
+            Piece piece = board[from & 7][from >> 3];
+            long allowed = (pinned & Bitboards.bit(from)) != 0 ? targets & Bitboards.LINE[king][from] : targets;
+
+            long attacks;
+            switch (piece.type) {
+                case Bitboards.PAWN -> {
+                    count = pawnMoves(from, side, enemy, allowed, moves, count);
+                    continue;
                 }
+                case Bitboards.HORSE -> attacks = Attacks.HORSE[from];
+                case Bitboards.BISHOP -> attacks = Attacks.bishop(from, occupied);
+                case Bitboards.ROOK -> attacks = Attacks.rook(from, occupied);
+                case Bitboards.QUEEN -> attacks = Attacks.queen(from, occupied);
+                default -> attacks = 0;
             }
+            count = addMoves(from, attacks & allowed, enemy, moves, count);
+        }
+        return count;
+    }
 
-            case "Queen" -> {
-                if(Math.abs(vertical)==Math.abs(horizontal)) {
-                    if(!goodDiagonalMove(colIndex,rowIndex,vertical,horizontal)) {
-                        System.out.println("No movement for Queen");
-                        return false;
-                    }
-                } else {
-                    if (!goodOrthogonalMove(colIndex, rowIndex, vertical, horizontal)) {
-                        System.out.println("No movement for Queen");
-                        return false;
-                    }
+    /**
+     * Checks whether the side to move is in check.
+     *
+     * @return {@code true} if the king of the side to move is attacked.
+     */
+    public boolean inCheck() {
+        ensureAttacks(whiteToMove);
+        return checkers != 0;
+    }
+
+    /**
+     * Checks whether the side to move has been checkmated: it is in check and has no legal move.
+     *
+     * @return {@code true} if the game is lost for the side to move.
+     */
+    public boolean isCheckmate() {
+        return inCheck() && !hasLegalMove();
+    }
+
+    /**
+     * Checks whether the side to move is stalemated: it is not in check but has no legal move.
+     *
+     * @return {@code true} if the game is drawn by stalemate.
+     */
+    public boolean isStalemate() {
+        return !inCheck() && !hasLegalMove() && pieces[Bitboards.index(Bitboards.KING, whiteToMove)] != 0;
+    }
+
+    /**
+     * Checks whether the side to move has at least one legal move. A king with a safe square
+     * answers this straight from the attack maps, only otherwise are all moves generated.
+     *
+     * @return {@code true} if the game can go on.
+     */
+    public boolean hasLegalMove() {
+        long kings = pieces[Bitboards.index(Bitboards.KING, whiteToMove)];
+        if (kings == 0) return false;
+        ensureAttacks(whiteToMove);
+        long own = colours[whiteToMove ? 0 : 1];
+        if ((Attacks.KING[Long.numberOfTrailingZeros(kings)] & ~own & ~enemyAttacks) != 0) return true;
+        return generateMoves(whiteToMove, lookupMoves) > 0;
+    }
+
+    /**
+     * Returns every square attacked by one side with the current occupancy.
+     *
+     * @param white {@code true} for the squares white attacks, {@code false} for black.
+     * @return The attack map of the side.
+     */
+    public long attacks(boolean white) {
+        return attacks(white, occupied);
+    }
+
+    /**
+     * Returns every square attacked by one side, with sliding pieces blocked by {@code occupancy}.
+     */
+    private long attacks(boolean white, long occupancy) {
+        int side = white ? 0 : 1;
+        long attacked = 0;
+        long remaining = colours[side];
+        while (remaining != 0) {
+            int from = Long.numberOfTrailingZeros(remaining);
+            remaining &= remaining - 1;
+            switch (board[from & 7][from >> 3].type) {
+                case Bitboards.PAWN -> attacked |= Attacks.PAWN[side][from];
+                case Bitboards.HORSE -> attacked |= Attacks.HORSE[from];
+                case Bitboards.KING -> attacked |= Attacks.KING[from];
+                case Bitboards.BISHOP -> attacked |= Attacks.bishop(from, occupancy);
+                case Bitboards.ROOK -> attacked |= Attacks.rook(from, occupancy);
+                case Bitboards.QUEEN -> attacked |= Attacks.queen(from, occupancy);
+                default -> {
                 }
             }
-            default ->{
-                System.out.println("Selected unexpected class type");
-                return false;
-            }
         }
+        return attacked;
+    }
+
+    /**
+     * Computes the attack maps for {@code white} unless the cached ones already describe it.
+     * Only maps for the side to move are kept, as only those are saved by {@link #makeMove(int)}.
+     */
+    private void ensureAttacks(boolean white) {
+        if (attacksValid && white == whiteToMove) return;
+        updateAttacks(white);
+        attacksValid = white == whiteToMove;
+    }
+
+    /**
+     * Computes the squares the opponent of {@code white} attacks, the opponent pieces giving check
+     * and the pieces of {@code white} pinned to their king.
+     * <p>
+     * The opponent's sliders are computed without the king on the board, so the king cannot
+     * escape a check by stepping back along the checking line. A piece is pinned when it is the
+     * only piece between its king and an opponent slider that would otherwise attack the king.
+     *
+     * @param white The side whose king is examined.
+     */
+    private void updateAttacks(boolean white) {
+        int side = white ? 0 : 1;
+        long kings = pieces[Bitboards.index(Bitboards.KING, white)];
+        int king = Long.numberOfTrailingZeros(kings);
+        boolean black = !white;
+        long straight = pieces[Bitboards.index(Bitboards.ROOK, black)] | pieces[Bitboards.index(Bitboards.QUEEN, black)];
+        long diagonal = pieces[Bitboards.index(Bitboards.BISHOP, black)] | pieces[Bitboards.index(Bitboards.QUEEN, black)];
+
+        enemyAttacks = attacks(black, occupied & ~kings);
+        checkers = 0;
+        pinned = 0;
+        if (kings == 0) return;
+
+        checkers = (Attacks.PAWN[side][king] & pieces[Bitboards.index(Bitboards.PAWN, black)])
+                | (Attacks.HORSE[king] & pieces[Bitboards.index(Bitboards.HORSE, black)])
+                | (Attacks.rook(king, occupied) & straight)
+                | (Attacks.bishop(king, occupied) & diagonal);
+
+        // sliders lined up with the king on an otherwise empty board
+        long snipers = (Attacks.rook(king, 0) & straight) | (Attacks.bishop(king, 0) & diagonal);
+        while (snipers != 0) {
+            int sniper = Long.numberOfTrailingZeros(snipers);
+            snipers &= snipers - 1;
+            long blockers = Bitboards.BETWEEN[king][sniper] & occupied;
+            if (Long.bitCount(blockers) == 1) pinned |= blockers & colours[side];
+        }
+    }
+
+    /**
+     * Checks whether a move the piece can make would keep its own king out of check, using the
+     * attack maps of the position rather than making the move.
+     *
+     * @param white {@code true} if white is moving.
+     * @param from  The source square.
+     * @param to    The destination square, already known to be reachable by the piece.
+     * @return {@code true} if the king is not in check after the move.
+     */
+    private boolean isLegal(boolean white, int from, int to) {
+        long kings = pieces[Bitboards.index(Bitboards.KING, white)];
+        if (kings == 0) return true;
+        ensureAttacks(white);
+        int king = Long.numberOfTrailingZeros(kings);
+        if (from == king) return (enemyAttacks & Bitboards.bit(to)) == 0;
+        if (Long.bitCount(checkers) > 1) return false;
+        if (checkers != 0 && ((checkers | Bitboards.BETWEEN[king][Long.numberOfTrailingZeros(checkers)]) & Bitboards.bit(to)) == 0) {
+            return false;
+        }
+        return (pinned & Bitboards.bit(from)) == 0 || (Bitboards.LINE[king][from] & Bitboards.bit(to)) != 0;
+    }
 
-        // check if a piece exists at destination location
-        if (board[destColIndex][destRowIndex].alive) {
-            // is friendly fire?
-            if (board[destCol - 97][destRow - 1].white == white) {
-                System.out.println("Same Team!");
-                return false;
+    /**
+     * @return The last move made on the board and not yet unmade, or 0 if there is none.
+     */
+    int lastMove() {
+        return ply > 0 ? undoMove[ply - 1] : 0;
+    }
+
+    /**
+     * Finds the move of the side to move between two squares, without printing or changing the board.
+     *
+     * @param from The source square.
+     * @param to   The destination square.
+     * @return The encoded move including its flags, or 0 if no such move can be made.
+     */
+    public int findMove(int from, int to) {
+        int count = generateMoves(whiteToMove, lookupMoves);
+        for (int i = 0; i < count; i++) {
+            if (Move.from(lookupMoves[i]) == from && Move.to(lookupMoves[i]) == to) return lookupMoves[i];
+        }
+        return 0;
+    }
+
+    /**
+     * Statically evaluates the position by material and piece placement, tapered between
+     * middlegame and endgame values by the pieces left on the board.
+     * <p>
+     * The terms are kept up to date by every move, so this only blends two numbers.
+     * {@link #evaluateFromScratch()} computes the same score by visiting every square.
+     *
+     * @return The score in centipawns from the point of view of the side to move.
+     */
+    public int evaluate() {
+        int score = PieceSquareTables.taper(midgame, endgame, phase);
+        return whiteToMove ? score : -score;
+    }
+
+    /**
+     * Computes {@link #evaluate()} without the incremental terms, by looking up every piece of the
+     * {@code Piece[][]} grid in the tables. Used to check and benchmark the incremental evaluation.
+     *
+     * @return The score in centipawns from the point of view of the side to move.
+     */
+    int evaluateFromScratch() {
+        int mg = 0;
+        int eg = 0;
+        int gamePhase = 0;
+        for (int col = 0; col < 8; col++) {
+            for (int row = 0; row < 8; row++) {
+                Piece piece = board[col][row];
+                if (piece.type < 0) continue;
+                int index = Bitboards.index(piece.type, piece.white);
+                int square = Bitboards.square(col, row);
+                mg += PieceSquareTables.MIDGAME[index][square];
+                eg += PieceSquareTables.ENDGAME[index][square];
+                gamePhase += PieceSquareTables.PHASE[piece.type];
             }
         }
+        int score = PieceSquareTables.taper(mg, eg, gamePhase);
+        return whiteToMove ? score : -score;
+    }
+
+    /**
+     * Counts the leaf nodes of the move tree to the given depth from the current position.
+     * <p>
+     * Used to check the move generator against known node counts and to measure its throughput.
+     *
+     * @param depth The number of plies to search.
+     * @return The number of positions reached at exactly {@code depth} plies.
+     */
+    public long perft(int depth) {
+        if (depth == 0) return 1;
+        return perft(depth, new int[depth][MAX_MOVES]);
+    }
+
+    /**
+     * Recursive perft over make/unmake, using one preallocated move buffer per remaining ply.
+     */
+    private long perft(int depth, int[][] buffers) {
+        int[] moves = buffers[depth - 1];
+        int count = generateMoves(whiteToMove, moves);
+        if (depth == 1) return count;
+
+        long nodes = 0;
+        for (int i = 0; i < count; i++) {
+            makeMove(moves[i]);
+            nodes += perft(depth - 1, buffers);
+            unmakeMove();
+        }
+        return nodes;
+    }
 
-        // Check win condition (King Killed)
-        if (board[destColIndex][destRowIndex].alive) {
-            if (board[destColIndex][destRowIndex] instanceof King) {
-                if (white) System.out.println("WHITE WINS");
-                else System.out.println("BLACK WINS");
-                // TODO: return to menu?
-                System.exit(0);
+    /**
+     * Adds pawn pushes and diagonal attacks for the pawn on the given square, limited to the
+     * {@code allowed} destinations.
+     */
+    private int pawnMoves(int from, int side, long enemy, long allowed, int[] moves, int count) {
+        int step = side == 0 ? 8 : -8;
+        int to = from + step;
+        if (to < 0 || to > 63) return count;
+
+        // forward advance, two squares if it is the pawn's first move
+        if ((occupied & Bitboards.bit(to)) == 0) {
+            if ((allowed & Bitboards.bit(to)) != 0) moves[count++] = Move.encode(from, to, 0);
+            int jump = to + step;
+            if ((unmovedPawns & Bitboards.bit(from)) != 0 && jump >= 0 && jump <= 63 && (occupied & Bitboards.bit(jump)) == 0
+                    && (allowed & Bitboards.bit(jump)) != 0) {
+                moves[count++] = Move.encode(from, jump, Move.DOUBLE_PUSH);
             }
         }
 
-        // empty current location and place selected at destination
-        board[colIndex][rowIndex] = new Piece();
-        board[destColIndex][destRowIndex] = selected;
+        // attack moves off the line
+        return addMoves(from, Attacks.PAWN[side][from] & enemy & allowed, enemy, moves, count);
+    }
+
+    /**
+     * Adds a move from the given square to each square of {@code targets}, flagging captures.
+     */
+    private int addMoves(int from, long targets, long enemy, int[] moves, int count) {
+        while (targets != 0) {
+            int to = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            moves[count++] = Move.encode(from, to, (enemy & Bitboards.bit(to)) != 0 ? Move.CAPTURE : 0);
+        }
+        return count;
+    }
+
+    /**
+     * Moves a piece between squares on the bitboards, removing any captured piece,
+     * and updates the hash for the squares that changed.
+     *
+     * @param moved    The piece being moved.
+     * @param captured The piece previously at the destination, possibly an empty square.
+     * @param from     The square the piece leaves.
+     * @param to       The square the piece arrives on.
+     */
+    private void updateBitboards(Piece moved, Piece captured, int from, int to) {
+        long fromBit = Bitboards.bit(from);
+        long toBit = Bitboards.bit(to);
+        int capturedType = captured.type;
+        if (capturedType >= 0) {
+            int capturedIndex = Bitboards.index(capturedType, captured.white);
+            pieces[capturedIndex] &= ~toBit;
+            colours[captured.white ? 0 : 1] &= ~toBit;
+            hash ^= Zobrist.PIECE_SQUARE[capturedIndex][to];
+            midgame -= PieceSquareTables.MIDGAME[capturedIndex][to];
+            endgame -= PieceSquareTables.ENDGAME[capturedIndex][to];
+            phase -= PieceSquareTables.PHASE[capturedType];
+        }
+        int movedIndex = Bitboards.index(moved.type, moved.white);
+        pieces[movedIndex] ^= fromBit | toBit;
+        colours[moved.white ? 0 : 1] ^= fromBit | toBit;
+        occupied = colours[0] | colours[1];
+        hash ^= Zobrist.PIECE_SQUARE[movedIndex][from] ^ Zobrist.PIECE_SQUARE[movedIndex][to];
+        midgame += PieceSquareTables.MIDGAME[movedIndex][to] - PieceSquareTables.MIDGAME[movedIndex][from];
+        endgame += PieceSquareTables.ENDGAME[movedIndex][to] - PieceSquareTables.ENDGAME[movedIndex][from];
+    }
 
-        // handle special case pawn first move
-        if (selected instanceof Pawn && ((Pawn) selected).firstMove) {
-            ((Pawn) selected).removeFirstMove();
+    /**
+     * Reverses {@link #updateBitboards}, moving the piece back and returning any captured piece.
+     * The hash is restored from the undo stack rather than recomputed, the evaluation terms by
+     * subtracting the same table entries again.
+     *
+     * @param moved    The piece that was moved.
+     * @param captured The piece that was at the destination, possibly an empty square.
+     * @param from     The square the piece returns to.
+     * @param to       The square the piece leaves.
+     */
+    private void restoreBitboards(Piece moved, Piece captured, int from, int to) {
+        long fromBit = Bitboards.bit(from);
+        long toBit = Bitboards.bit(to);
+        int movedIndex = Bitboards.index(moved.type, moved.white);
+        pieces[movedIndex] ^= fromBit | toBit;
+        colours[moved.white ? 0 : 1] ^= fromBit | toBit;
+        midgame -= PieceSquareTables.MIDGAME[movedIndex][to] - PieceSquareTables.MIDGAME[movedIndex][from];
+        endgame -= PieceSquareTables.ENDGAME[movedIndex][to] - PieceSquareTables.ENDGAME[movedIndex][from];
+        int capturedType = captured.type;
+        if (capturedType >= 0) {
+            int capturedIndex = Bitboards.index(capturedType, captured.white);
+            pieces[capturedIndex] |= toBit;
+            colours[captured.white ? 0 : 1] |= toBit;
+            midgame += PieceSquareTables.MIDGAME[capturedIndex][to];
+            endgame += PieceSquareTables.ENDGAME[capturedIndex][to];
+            phase += PieceSquareTables.PHASE[capturedType];
         }
-        return true;
+        occupied = colours[0] | colours[1];
     }
 
     /**
@@ -277,17 +1050,7 @@ public class Board {
      * @return           {@code true} if the path is clear for the diagonal move, {@code false} if a piece is blocking the path.
      */
     private boolean goodDiagonalMove(int colIndex, int rowIndex, int vertical, int horizontal) {
-        int vertIncrement = vertical/Math.abs(vertical);
-        int horIncrement = horizontal/Math.abs(horizontal);
-        for (int vertOffset = vertIncrement, horizOffset = horIncrement;
-             vertOffset != vertical && horizOffset != horizontal;
-             vertOffset += vertIncrement, horizOffset += horIncrement) {
-            if (board[colIndex+horizOffset][rowIndex+vertOffset].alive) {
-                System.out.println("piece blocking path");
-                return false;
-            }
-        }
-        return true;
+        return clearPath(colIndex, rowIndex, vertical, horizontal);
     }
 
     /**
@@ -302,35 +1065,21 @@ public class Board {
      * @return           {@code true} if the path is clear for the orthogonal move, {@code false} if a piece is blocking the path.
      */
     private boolean goodOrthogonalMove(int colIndex, int rowIndex, int vertical, int horizontal) {
-        if(vertical < 0){ // moving down
-            for (int i = 1; i < Math.abs(vertical); i++){
-                if(board[colIndex][rowIndex-i].alive) {
-                    System.out.println("piece blocking path");
-                    return false;
-                }
-            }
-        } else if(vertical > 0){ // moving up
-            for (int i = 1; i < vertical; i++){
-                if(board[colIndex][rowIndex+i].alive) {
-                    System.out.println("piece blocking path");
-                    return false;
-                }
-            }
-        } else if (horizontal < 0) { // moving left
-            for (int i = 1; i < Math.abs(horizontal); i++){
-                if(board[colIndex-i][rowIndex].alive) {
-                    System.out.println("piece blocking path");
-                    return false;
-                }
-            }
-        } else if (horizontal > 0) {
-            for (int i = 1; i < horizontal; i++){
-                if(board[colIndex+i][rowIndex].alive) {
-                    System.out.println("piece blocking path");
-                    return false;
-                }
-            }
-        }
-        return true;
+        return clearPath(colIndex, rowIndex, vertical, horizontal);
+    }
+
+    /**
+     * Tests the squares between the current position and the destination against the occupancy mask.
+     *
+     * @param colIndex   The column index of the current piece.
+     * @param rowIndex   The row index of the current piece.
+     * @param vertical   The vertical displacement between the current position and the destination.
+     * @param horizontal The horizontal displacement between the current position and the destination.
+     * @return           {@code true} if no piece stands between the two squares.
+     */
+    private boolean clearPath(int colIndex, int rowIndex, int vertical, int horizontal) {
+        int from = Bitboards.square(colIndex, rowIndex);
+        int to = Bitboards.square(colIndex + horizontal, rowIndex + vertical);
+        return (Bitboards.BETWEEN[from][to] & occupied) == 0;
     }
 }
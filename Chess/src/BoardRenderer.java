@@ -0,0 +1,182 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Draws boards as text into one reusable byte buffer, in the layout of {@link Board#toString()}.
+ * <p>
+ * The frame is laid out once: the column header, the rule and the row labels and cell borders
+ * never change, so rendering a board only writes the two glyph bytes of each of the 64 cells,
+ * looked up by bitboard index from a fixed table. Nothing is allocated per board and the frame
+ * is written to the output with a single call, so callers should pass a buffered stream and
+ * flush it once per batch of boards.
+ * <p>
+ * In diff mode the first board is drawn in full after clearing the terminal, and every later
+ * board only moves the cursor to the cells that changed and rewrites them with ANSI escape
+ * sequences, leaving the cursor below the board. That suits a dedicated display such as a
+ * game replay, where a move touches two cells rather than the whole frame.
+ * <p>
+ * A renderer is not thread-safe; use one per thread or per output.
+ */
+class BoardRenderer {
+
+    // characters per line including the newline, and lines above the first board row
+    private static final int LINE = 35;
+    private static final int HEADER_LINES = 2;
+
+    // bytes in a full frame, without a newline after the last row
+    static final int FRAME_BYTES = LINE * (HEADER_LINES + 8) - 1;
+
+    // two glyph bytes per bitboard index plus one for an empty square, see Bitboards.index
+    private static final byte[] GLYPHS = "WPBPWHBHWBBBWRBRWQBQWKBK  ".getBytes(StandardCharsets.US_ASCII);
+    private static final int EMPTY = 12;
+
+    // the frame with every cell empty, copied into each renderer
+    private static final byte[] TEMPLATE = new byte[FRAME_BYTES];
+
+    private static final byte[] CLEAR = "\033[H\033[2J".getBytes(StandardCharsets.US_ASCII);
+
+    static {
+        StringBuilder frame = new StringBuilder(FRAME_BYTES);
+        frame.append("  |a ||b ||c ||d ||e ||f ||g ||h |\n");
+        frame.append("  |------------------------------|\n");
+        for (int row = 7; row >= 0; row--) {
+            frame.append(row + 1).append(' ');
+            for (int col = 0; col < 8; col++) frame.append("|  |");
+            if (row > 0) frame.append('\n');
+        }
+        System.arraycopy(frame.toString().getBytes(StandardCharsets.US_ASCII), 0, TEMPLATE, 0, FRAME_BYTES);
+    }
+
+    private final boolean diff;
+
+    // the rendered frame, or the escape sequences of the last diff
+    private final byte[] buffer;
+    private int length;
+
+    // glyph code of every square in the last frame and in the one being rendered
+    private final byte[] shown = new byte[64];
+    private final byte[] codes = new byte[64];
+
+    // whether the terminal holds a full frame to diff against
+    private boolean drawn;
+
+    /**
+     * @param diff {@code true} to redraw only the changed cells after the first board
+     */
+    BoardRenderer(boolean diff) {
+        this.diff = diff;
+        // a full frame after clearing the screen, or a cursor move and two glyphs per cell plus the final move
+        buffer = new byte[Math.max(CLEAR.length + FRAME_BYTES + 1, 64 * 10 + 10)];
+    }
+
+    /**
+     * Renders a board into the buffer, in full or as a diff against the last board rendered.
+     *
+     * @param board the position, not modified
+     * @return the number of bytes rendered, see {@link #buffer()}
+     */
+    int render(Board board) {
+        for (int square = 0; square < 64; square++) codes[square] = EMPTY;
+        for (int index = 0; index < 12; index++) {
+            long remaining = board.pieces[index];
+            while (remaining != 0) {
+                codes[Long.numberOfTrailingZeros(remaining)] = (byte) index;
+                remaining &= remaining - 1;
+            }
+        }
+
+        if (!diff) {
+            System.arraycopy(TEMPLATE, 0, buffer, 0, FRAME_BYTES);
+            for (int square = 0; square < 64; square++) {
+                int cell = cell(square);
+                buffer[cell] = GLYPHS[codes[square] * 2];
+                buffer[cell + 1] = GLYPHS[codes[square] * 2 + 1];
+            }
+            length = FRAME_BYTES;
+            return length;
+        }
+
+        length = 0;
+        if (!drawn) {
+            System.arraycopy(CLEAR, 0, buffer, 0, CLEAR.length);
+            System.arraycopy(TEMPLATE, 0, buffer, CLEAR.length, FRAME_BYTES);
+            for (int square = 0; square < 64; square++) {
+                int cell = CLEAR.length + cell(square);
+                buffer[cell] = GLYPHS[codes[square] * 2];
+                buffer[cell + 1] = GLYPHS[codes[square] * 2 + 1];
+            }
+            length = CLEAR.length + FRAME_BYTES;
+            buffer[length++] = '\n';
+            drawn = true;
+        } else {
+            boolean changed = false;
+            for (int square = 0; square < 64; square++) {
+                if (codes[square] == shown[square]) continue;
+                // terminal lines and columns count from 1
+                int cell = cell(square);
+                moveCursor(cell / LINE + 1, cell % LINE + 1);
+                buffer[length++] = GLYPHS[codes[square] * 2];
+                buffer[length++] = GLYPHS[codes[square] * 2 + 1];
+                changed = true;
+            }
+            if (changed) moveCursor(HEADER_LINES + 9, 1);
+        }
+        System.arraycopy(codes, 0, shown, 0, 64);
+        return length;
+    }
+
+    /**
+     * Renders a board and writes it to a stream with one call, followed by a newline in full mode.
+     * The stream is not flushed.
+     *
+     * @param board the position, not modified
+     * @param out   the stream, preferably buffered
+     * @throws IOException if the stream cannot be written
+     */
+    void write(Board board, OutputStream out) throws IOException {
+        render(board);
+        if (!diff) buffer[length++] = '\n';
+        out.write(buffer, 0, length);
+    }
+
+    /**
+     * @return the buffer holding the last rendering, valid up to the length returned by {@link #render}
+     */
+    byte[] buffer() {
+        return buffer;
+    }
+
+    /**
+     * Forgets the last board, so the next diff redraws the whole frame.
+     */
+    void reset() {
+        drawn = false;
+    }
+
+    /**
+     * @return the offset within a full frame of the first glyph byte of a square
+     */
+    private static int cell(int square) {
+        int row = square >> 3;
+        int col = square & 7;
+        return (HEADER_LINES + 7 - row) * LINE + 3 + col * 4;
+    }
+
+    /**
+     * Appends the ANSI sequence moving the cursor to a line and column.
+     */
+    private void moveCursor(int line, int column) {
+        buffer[length++] = '\033';
+        buffer[length++] = '[';
+        appendNumber(line);
+        buffer[length++] = ';';
+        appendNumber(column);
+        buffer[length++] = 'H';
+    }
+
+    private void appendNumber(int value) {
+        if (value >= 10) buffer[length++] = (byte) ('0' + value / 10);
+        buffer[length++] = (byte) ('0' + value % 10);
+    }
+}
@@ -1,3 +1,5 @@
+import java.io.BufferedReader;
+import java.io.IOException;
 import java.util.Scanner;
 
 /**
@@ -9,6 +11,11 @@ import java.util.Scanner;
 public class ChessCLI {
     Scanner reader = new Scanner(System.in);
 
+    // special results of readMove
+    static final int END_OF_INPUT = -1;
+    static final int BAD_INPUT = -2;
+    static final int NEW_GAME = -3;
+
     /**
      * Prompts the user for a row number and validates the input.
      * <p>
@@ -40,6 +47,77 @@ public class ChessCLI {
         return input;
     }
 
+    /**
+     * Prompts the user to pick one of a numbered list of options and validates the input.
+     * <p>
+     * The method repeatedly asks for a number between 1 and {@code options} until a correct
+     * input is provided, in the same way as {@link #getUserInt(String)} does for rows.
+     *
+     * @param prompt  A string listing the options the user can choose from
+     * @param options The number of options, the highest valid choice
+     * @return The integer representing the user's choice (1 to {@code options})
+     */
+    public int getUserChoice(String prompt, int options){
+        boolean validInput = false;
+        int input = 0;
+
+        System.out.println(prompt);
+
+        while (!validInput) {
+            if (reader.hasNextInt()) {
+                input = reader.nextInt();
+                if (input > 0 && input <= options) validInput = true;
+                else {
+                    System.out.println("Please enter a number from 1 to " + options);
+                }
+            } else {
+                System.out.println("Please enter a number from 1 to " + options);
+                reader.next();
+            }
+        }
+        return input;
+    }
+
+    /**
+     * Reads the next move in coordinate notation (e.g. "e2e4") from a buffered stream, without prompting.
+     * <p>
+     * Used by the headless mode, where whole moves are piped in rather than typed one field at a time.
+     * Moves are separated by any whitespace and are read character by character, so no strings are
+     * created. The word "new" is returned as {@link #NEW_GAME} to start another game. The method
+     * keeps no state, so it needs no {@code ChessCLI} and any number of streams can be read at once.
+     *
+     * @param in The stream to read from
+     * @return The move as {@code from | to << 6} square indices (see {@link Move}), {@link #NEW_GAME},
+     *         {@link #BAD_INPUT} for a token that is not a move, or {@link #END_OF_INPUT}
+     * @throws IOException if the stream cannot be read
+     */
+    public static int readMove(BufferedReader in) throws IOException {
+        int c = in.read();
+        while (c >= 0 && Character.isWhitespace(c)) c = in.read();
+        if (c < 0) return END_OF_INPUT;
+
+        // the first four characters, lower case, packed one per byte
+        int token = 0;
+        int length = 0;
+        while (c >= 0 && !Character.isWhitespace(c)) {
+            if (length < 4) token |= Character.toLowerCase(c) << (length * 8);
+            length++;
+            c = in.read();
+        }
+        if (length == 3 && token == ('n' | 'e' << 8 | 'w' << 16)) return NEW_GAME;
+        if (length != 4) return BAD_INPUT;
+
+        int fromCol = token & 0xFF;
+        int fromRow = token >>> 8 & 0xFF;
+        int toCol = token >>> 16 & 0xFF;
+        int toRow = token >>> 24;
+        if (fromCol < 'a' || fromCol > 'h' || fromRow < '1' || fromRow > '8'
+                || toCol < 'a' || toCol > 'h' || toRow < '1' || toRow > '8') return BAD_INPUT;
+        int from = (fromRow - '1') * 8 + fromCol - 'a';
+        int to = (toRow - '1') * 8 + toCol - 'a';
+        return from | to << 6;
+    }
+
     /**
      * Prints the provided string to the console.
      * <p>
@@ -0,0 +1,441 @@
+import java.util.Arrays;
+
+/**
+ * Alpha-beta search engine that picks a move for the side to move on a {@code Board}.
+ * <p>
+ * The search is an iterative deepening negamax with a quiescence search over captures at the
+ * leaves. Results are cached in a {@link TranspositionTable}. Moves are tried in this order:
+ * the best move stored for the position, captures by most valuable victim / least valuable
+ * attacker (MVV-LVA), the two killer moves of the ply, then the remaining quiet moves by
+ * their history score.
+ * <p>
+ * Each iteration searches one ply deeper until the depth limit is reached or the time budget
+ * runs out. The best move of the last completed iteration is played. The engine only uses
+ * {@link Board#makeMove(int)} and {@link Board#unmakeMove()}, so the board is left unchanged.
+ */
+public class Engine {
+
+    // score bounds, mate scores are reduced by the ply the mate happens at
+    static final int INFINITY = 32000;
+    static final int MATE = 30000;
+
+    // deepest ply the search can reach, including quiescence
+    static final int MAX_PLY = 128;
+
+    // piece values used to order captures, indexed by piece type
+    private static final int[] ORDER_VALUE = {1, 3, 3, 5, 9, 100};
+
+    // move ordering scores
+    private static final int TT_MOVE = 1_000_000;
+    private static final int CAPTURE = 100_000;
+    private static final int FIRST_KILLER = 90_000;
+    private static final int SECOND_KILLER = 80_000;
+    private static final int HISTORY_LIMIT = 50_000;
+
+    /**
+     * Receives progress reports from a running search, e.g. to print UCI info lines.
+     */
+    interface Listener {
+        /**
+         * Called after each completed iteration, on the searching thread.
+         *
+         * @param depth  the depth of the iteration
+         * @param score  the score of the best move
+         * @param move   the best move
+         * @param nanos  the time since the search started
+         */
+        void iterationComplete(int depth, int score, int move, long nanos);
+    }
+
+    private final TranspositionTable table;
+    private Listener listener;
+    private Tablebase tablebase;
+
+    // per ply move lists and ordering scores, allocated once so the search produces no garbage
+    private final int[][] moves = new int[MAX_PLY][Board.MAX_MOVES];
+    private final int[][] scores = new int[MAX_PLY][Board.MAX_MOVES];
+    private final int[][] killers = new int[MAX_PLY][2];
+    private final int[][] history = new int[64][64];
+
+    private Board board;
+    private long nodes;
+    private long deadline;
+    private boolean stopped;
+
+    // set from other threads to end the search, checked together with the clock
+    private volatile boolean stopRequested;
+
+    // helpers of a parallel search stop at once, otherwise the first iteration always completes
+    private boolean helper;
+
+    // results of the last search
+    private int rootBest;
+    private int bestMove;
+    private int bestScore;
+    private int completedDepth;
+    private long elapsedNanos;
+
+    /**
+     * Creates an engine caching its results in the given table.
+     *
+     * @param table the transposition table to use
+     */
+    Engine(TranspositionTable table) {
+        this.table = table;
+    }
+
+    /**
+     * Searches the position on {@code board} for the side to move.
+     *
+     * @param board    the position to search, restored before returning
+     * @param maxDepth the deepest iteration to run
+     * @param millis   the time budget in milliseconds, 0 for no limit
+     * @return the best move found, or 0 if the side to move has no moves
+     */
+    public int search(Board board, int maxDepth, long millis) {
+        stopRequested = false;
+        table.newSearch();
+        return search(board, 1, maxDepth, millis, false);
+    }
+
+    /**
+     * Searches the position on {@code board} starting the iterations at {@code firstDepth}.
+     * Helper threads of a parallel search start at different depths so they do not all
+     * search the same tree in step. Unlike {@link #search(Board, int, long)} this does not
+     * clear an earlier {@link #stop()}, see {@link #resetStop()}, and does not start a new
+     * generation in the transposition table: the workers of a parallel search share the table,
+     * so the caller calls {@link TranspositionTable#newSearch()} once before starting them.
+     *
+     * @param board      the position to search, restored before returning
+     * @param firstDepth the depth of the first iteration
+     * @param maxDepth   the deepest iteration to run
+     * @param millis     the time budget in milliseconds, 0 for no limit
+     * @param helper     {@code true} if the result is not needed, so a stop may end the first iteration
+     * @return the best move found, or 0 if the side to move has no moves
+     */
+    int search(Board board, int firstDepth, int maxDepth, long millis, boolean helper) {
+        this.helper = helper;
+        this.board = board;
+        long start = System.nanoTime();
+        deadline = millis > 0 ? start + millis * 1_000_000 : Long.MAX_VALUE;
+        nodes = 0;
+        stopped = false;
+        bestMove = 0;
+        bestScore = 0;
+        completedDepth = 0;
+        for (int[] killer : killers) {
+            killer[0] = 0;
+            killer[1] = 0;
+        }
+        for (int[] row : history) {
+            for (int to = 0; to < 64; to++) row[to] >>= 2;
+        }
+
+        for (int depth = firstDepth; depth <= Math.min(maxDepth, MAX_PLY - 1); depth++) {
+            rootBest = 0;
+            int score = negamax(depth, -INFINITY, INFINITY, 0);
+            if (stopped) break;
+
+            bestMove = rootBest;
+            bestScore = score;
+            completedDepth = depth;
+            if (listener != null) listener.iterationComplete(depth, score, bestMove, System.nanoTime() - start);
+
+            // a forced mate will not change with more depth, and another iteration would not finish in time
+            if (Math.abs(score) > MATE - MAX_PLY) break;
+            if (millis > 0 && System.nanoTime() - start > (deadline - start) / 2) break;
+        }
+        elapsedNanos = Math.max(1, System.nanoTime() - start);
+        return bestMove;
+    }
+
+    /**
+     * Negamax alpha-beta search of the current position.
+     *
+     * @param depth the remaining depth in plies
+     * @param alpha the lower bound of the search window
+     * @param beta  the upper bound of the search window
+     * @param ply   the distance from the root
+     * @return the score of the position for the side to move
+     */
+    private int negamax(int depth, int alpha, int beta, int ply) {
+        if ((++nodes & 1023) == 0) checkTime();
+        if (stopped) return 0;
+        if (ply > 0 && board.isRepetition()) return 0;
+        if (ply > 0 && tablebase != null) {
+            int value = tablebase.probe(board);
+            if (value != Tablebase.NONE) return tablebaseScore(value, ply);
+        }
+        if (depth <= 0 || ply >= MAX_PLY - 1) return quiesce(alpha, beta, ply);
+
+        int ttMove = 0;
+        long entry = table.probe(board.hash);
+        if (entry != 0) {
+            ttMove = TranspositionTable.move(entry);
+            if (ply > 0 && TranspositionTable.depth(entry) >= depth) {
+                int score = fromTable(TranspositionTable.score(entry), ply);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.EXACT
+                        || (bound == TranspositionTable.LOWER && score >= beta)
+                        || (bound == TranspositionTable.UPPER && score <= alpha)) {
+                    return score;
+                }
+            }
+        }
+
+        int[] list = moves[ply];
+        int count = board.generateMoves(board.whiteToMove, list);
+        if (count == 0) return noMovesScore(ply);
+        scoreMoves(list, count, ply, ttMove);
+
+        int originalAlpha = alpha;
+        int best = -INFINITY;
+        int bestHere = 0;
+        for (int i = 0; i < count; i++) {
+            int move = pickNext(list, scores[ply], i, count);
+            board.makeMove(move);
+            int score = -negamax(depth - 1, -beta, -alpha, ply + 1);
+            board.unmakeMove();
+            if (stopped) return 0;
+
+            if (score > best) {
+                best = score;
+                bestHere = move;
+                if (ply == 0) rootBest = move;
+                if (score > alpha) {
+                    alpha = score;
+                    if (alpha >= beta) {
+                        if ((Move.flags(move) & Move.CAPTURE) == 0) rememberQuiet(move, depth, ply);
+                        break;
+                    }
+                }
+            }
+        }
+
+        int bound = best >= beta ? TranspositionTable.LOWER
+                : best > originalAlpha ? TranspositionTable.EXACT : TranspositionTable.UPPER;
+        table.store(board.hash, bestHere, toTable(best, ply), depth, bound);
+        return best;
+    }
+
+    /**
+     * Searches captures only until the position is quiet, so the static evaluation is not
+     * taken in the middle of an exchange.
+     */
+    private int quiesce(int alpha, int beta, int ply) {
+        if ((++nodes & 1023) == 0) checkTime();
+        if (stopped) return 0;
+
+        int[] list = moves[ply];
+        int count = board.generateMoves(board.whiteToMove, list);
+        if (count == 0) return noMovesScore(ply);
+
+        int standPat = board.evaluate();
+        if (standPat >= beta || ply >= MAX_PLY - 1) return standPat;
+        if (standPat > alpha) alpha = standPat;
+
+        // keep only the captures, ordered by MVV-LVA
+        int captures = 0;
+        for (int i = 0; i < count; i++) {
+            if ((Move.flags(list[i]) & Move.CAPTURE) != 0) list[captures++] = list[i];
+        }
+        scoreMoves(list, captures, ply, 0);
+
+        for (int i = 0; i < captures; i++) {
+            int move = pickNext(list, scores[ply], i, captures);
+            board.makeMove(move);
+            int score = -quiesce(-beta, -alpha, ply + 1);
+            board.unmakeMove();
+            if (stopped) return 0;
+
+            if (score > alpha) {
+                alpha = score;
+                if (alpha >= beta) break;
+            }
+        }
+        return alpha;
+    }
+
+    /**
+     * Scores a position where the side to move has no legal moves: lost if it is checkmated
+     * (or has no king in a set up position), otherwise drawn by stalemate.
+     */
+    private int noMovesScore(int ply) {
+        if (board.pieces[Bitboards.index(Bitboards.KING, board.whiteToMove)] == 0) return -MATE + ply;
+        return board.inCheck() ? -MATE + ply : 0;
+    }
+
+    /**
+     * Converts a tablebase value to a score, wins and losses scored like the mates found by search.
+     */
+    private static int tablebaseScore(int value, int ply) {
+        if (Tablebase.isWin(value)) return MATE - ply - Tablebase.plies(value);
+        if (Tablebase.isLoss(value)) return -MATE + ply + Tablebase.plies(value);
+        return 0;
+    }
+
+    /**
+     * Fills the ordering scores for a move list.
+     */
+    private void scoreMoves(int[] list, int count, int ply, int ttMove) {
+        int[] order = scores[ply];
+        for (int i = 0; i < count; i++) {
+            int move = list[i];
+            int from = Move.from(move);
+            int to = Move.to(move);
+            if (move == ttMove) {
+                order[i] = TT_MOVE;
+            } else if ((Move.flags(move) & Move.CAPTURE) != 0) {
+                int victim = board.board[to & 7][to >> 3].type;
+                int attacker = board.board[from & 7][from >> 3].type;
+                order[i] = CAPTURE + ORDER_VALUE[victim] * 16 - ORDER_VALUE[attacker];
+            } else if (move == killers[ply][0]) {
+                order[i] = FIRST_KILLER;
+            } else if (move == killers[ply][1]) {
+                order[i] = SECOND_KILLER;
+            } else {
+                order[i] = history[from][to];
+            }
+        }
+    }
+
+    /**
+     * Selection step of a lazy sort: swaps the best scored remaining move into position {@code index}.
+     */
+    private static int pickNext(int[] list, int[] order, int index, int count) {
+        int best = index;
+        for (int i = index + 1; i < count; i++) {
+            if (order[i] > order[best]) best = i;
+        }
+        int move = list[best];
+        list[best] = list[index];
+        list[index] = move;
+        int score = order[best];
+        order[best] = order[index];
+        order[index] = score;
+        return move;
+    }
+
+    /**
+     * Records a quiet move that caused a beta cutoff as a killer and in the history table.
+     */
+    private void rememberQuiet(int move, int depth, int ply) {
+        if (killers[ply][0] != move) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = move;
+        }
+        int from = Move.from(move);
+        int to = Move.to(move);
+        history[from][to] += depth * depth;
+        if (history[from][to] > HISTORY_LIMIT) {
+            for (int[] row : history) {
+                for (int square = 0; square < 64; square++) row[square] >>= 1;
+            }
+        }
+    }
+
+    /**
+     * Sets the listener told about each completed iteration, or {@code null} for none.
+     *
+     * @param listener the listener
+     */
+    void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Sets the endgame tablebases probed below the root, or {@code null} for none. Positions
+     * found in a table are scored from it instead of being searched.
+     *
+     * @param tablebase the tablebases
+     */
+    void setTablebase(Tablebase tablebase) {
+        this.tablebase = tablebase;
+    }
+
+    /**
+     * Asks a running search to stop, safe to call from any thread. The search returns the
+     * result of its last completed iteration once at least one iteration has finished.
+     */
+    void stop() {
+        stopRequested = true;
+    }
+
+    /**
+     * Forgets everything learned in earlier searches: empties the transposition table and clears
+     * the killer moves and history scores, so the next game does not depend on the games before it.
+     */
+    void newGame() {
+        table.clear();
+        for (int[] killer : killers) {
+            killer[0] = 0;
+            killer[1] = 0;
+        }
+        for (int[] row : history) Arrays.fill(row, 0);
+    }
+
+    /**
+     * Clears a stop request before a search is started from another thread.
+     */
+    void resetStop() {
+        stopRequested = false;
+    }
+
+    private void checkTime() {
+        if ((stopRequested || System.nanoTime() > deadline) && (completedDepth > 0 || helper)) stopped = true;
+    }
+
+    /**
+     * Mate scores are stored relative to the position rather than the root, so they stay
+     * correct when the entry is found at a different ply.
+     */
+    private static int toTable(int score, int ply) {
+        if (score > MATE - MAX_PLY) return score + ply;
+        if (score < -MATE + MAX_PLY) return score - ply;
+        return score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        if (score > MATE - MAX_PLY) return score - ply;
+        if (score < -MATE + MAX_PLY) return score + ply;
+        return score;
+    }
+
+    /**
+     * @return the score of the last search from the point of view of the side that moved
+     */
+    int bestScore() {
+        return bestScore;
+    }
+
+    /**
+     * @return the depth of the last completed iteration
+     */
+    int depth() {
+        return completedDepth;
+    }
+
+    /**
+     * @return the number of positions visited by the last search
+     */
+    long nodes() {
+        return nodes;
+    }
+
+    /**
+     * @return the nodes searched per second by the last search
+     */
+    long nps() {
+        return nodes * 1_000_000_000L / elapsedNanos;
+    }
+
+    /**
+     * Summarises the last search on one line, e.g. for printing after the engine moves.
+     *
+     * @return depth, score, nodes, time and nodes per second of the last search
+     */
+    String report() {
+        return String.format("depth %d, score %d, nodes %d, time %d ms, nps %d",
+                completedDepth, bestScore, nodes, elapsedNanos / 1_000_000, nps());
+    }
+}
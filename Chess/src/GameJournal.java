@@ -0,0 +1,478 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of games, also used as the compact archive format.
+ * <p>
+ * The file starts with the four bytes {@code CHJ1}, followed by a stream of big-endian 16 bit
+ * words. A word whose source and destination squares differ is a move in the {@link Move}
+ * encoding, so a move costs two bytes. Words with equal squares cannot be moves and mark frames:
+ * <pre>
+ *  square 0  new game from the start position
+ *  square 1  snapshot: the occupied squares (8 bytes), the bitboard index of each occupied
+ *            square in square order (4 bits each), the side to move (1 byte), the ply of the
+ *            game (2 bytes) and a CRC32 of the frame (4 bytes), 33 bytes at most
+ *  square 2  end of game, with the result in the flag bits, see {@link #WHITE_WINS}
+ * </pre>
+ * A snapshot follows every {@link #SNAPSHOT_INTERVAL} plies of a game. Moves are buffered and
+ * written in batches, and the file is forced to disk every {@code syncEvery} moves and game ends,
+ * on {@link #sync()} and on close, so a crash loses at most one batch.
+ * <p>
+ * Opening a journal recovers it: the file is scanned, a torn or corrupt tail is cut off, and an
+ * unfinished last game is restored by setting up its last snapshot and replaying only the moves
+ * after it, each checked against the rules. Appending then continues that game. Moves of
+ * finished games carry no checksum and are not checked again.
+ */
+class GameJournal implements Closeable {
+
+    // game results stored in the end of game frame, NO_RESULT for games ended without one
+    static final int NO_RESULT = 0;
+    static final int WHITE_WINS = 1;
+    static final int BLACK_WINS = 2;
+    static final int DRAW = 3;
+
+    // plies between snapshots of a game
+    static final int SNAPSHOT_INTERVAL = 64;
+
+    private static final byte[] MAGIC = {'C', 'H', 'J', '1'};
+
+    // frame markers, a move word from and to the same square
+    private static final int NEW_GAME = 0;
+    private static final int SNAPSHOT = 1 | 1 << 6;
+    private static final int END_GAME = 2 | 2 << 6;
+
+    // largest snapshot frame, a tag, 8 occupancy bytes, 16 bytes of pieces, side, ply and CRC
+    private static final int MAX_SNAPSHOT_BYTES = 2 + 8 + 16 + 1 + 2 + 4;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+    private final byte[] frame = new byte[MAX_SNAPSHOT_BYTES];
+    private final CRC32 crc = new CRC32();
+    private final int syncEvery;
+
+    private int unsynced;
+    private int gamePly;
+    private boolean inGame;
+    private Board recovered;
+
+    /**
+     * Opens or creates a journal, recovering an existing one as described above.
+     *
+     * @param path      the journal file
+     * @param syncEvery the number of moves and game ends between forced writes, 1 to make every record durable
+     * @throws IOException if the file cannot be read, written or is not a journal
+     */
+    GameJournal(Path path, int syncEvery) throws IOException {
+        this.syncEvery = Math.max(1, syncEvery);
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (channel.size() == 0) {
+            buffer.put(MAGIC);
+            sync();
+            return;
+        }
+        recover();
+    }
+
+    /**
+     * @return the position of the unfinished game found when the journal was opened, which
+     *         later moves continue, or {@code null} if the last game was finished
+     */
+    Board recovered() {
+        return recovered;
+    }
+
+    /**
+     * Starts a new game from the start position, ending an unfinished one with {@link #NO_RESULT}.
+     *
+     * @throws IOException if the journal cannot be written
+     */
+    void newGame() throws IOException {
+        if (inGame) endGame(NO_RESULT);
+        reserve(2);
+        buffer.putShort((short) NEW_GAME);
+        inGame = true;
+        gamePly = 0;
+        recovered = null;
+    }
+
+    /**
+     * Appends a move, with a snapshot of the position after it every {@link #SNAPSHOT_INTERVAL} plies.
+     * The first move after the end of a game starts a new one from the start position.
+     *
+     * @param move  the move just made, see {@link Move}
+     * @param board the position after the move
+     * @throws IOException if the journal cannot be written
+     */
+    void append(int move, Board board) throws IOException {
+        if (!inGame) newGame();
+        reserve(2 + MAX_SNAPSHOT_BYTES);
+        buffer.putShort((short) move);
+        if (++gamePly % SNAPSHOT_INTERVAL == 0) putSnapshot(board);
+        if (++unsynced >= syncEvery) sync();
+    }
+
+    /**
+     * Ends the current game. The record counts toward the batch like a move, so the journal is
+     * only forced to disk when the batch is full; call {@link #sync()} for a durability point.
+     *
+     * @param result the result, one of the result constants
+     * @throws IOException if the journal cannot be written
+     */
+    void endGame(int result) throws IOException {
+        reserve(2);
+        buffer.putShort((short) (END_GAME | result << 12));
+        inGame = false;
+        if (++unsynced >= syncEvery) sync();
+    }
+
+    /**
+     * Writes the buffered records and forces them to disk.
+     *
+     * @throws IOException if the journal cannot be written
+     */
+    void sync() throws IOException {
+        write();
+        channel.force(false);
+        unsynced = 0;
+    }
+
+    /**
+     * Syncs and closes the journal. An unfinished game stays unfinished and is recovered on the next open.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!channel.isOpen()) return;
+        try {
+            sync();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void reserve(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) write();
+    }
+
+    private void write() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+
+    /**
+     * Appends a snapshot frame of the position.
+     */
+    private void putSnapshot(Board board) {
+        int length = 0;
+        frame[length++] = (byte) (SNAPSHOT >>> 8);
+        frame[length++] = (byte) SNAPSHOT;
+        for (int shift = 56; shift >= 0; shift -= 8) frame[length++] = (byte) (board.occupied >>> shift);
+        long remaining = board.occupied;
+        boolean high = false;
+        while (remaining != 0) {
+            int square = Long.numberOfTrailingZeros(remaining);
+            remaining &= remaining - 1;
+            Piece piece = board.board[square & 7][square >> 3];
+            int index = Bitboards.index(piece.type, piece.white);
+            if (high) frame[length - 1] |= (byte) (index << 4);
+            else frame[length++] = (byte) index;
+            high = !high;
+        }
+        frame[length++] = (byte) (board.whiteToMove ? 0 : 1);
+        frame[length++] = (byte) (gamePly >>> 8);
+        frame[length++] = (byte) gamePly;
+        crc.reset();
+        crc.update(frame, 0, length);
+        int checksum = (int) crc.getValue();
+        buffer.put(frame, 0, length);
+        buffer.putInt(checksum);
+    }
+
+    /**
+     * Scans the journal, cuts off anything after the last intact record and restores an unfinished last game.
+     */
+    private void recover() throws IOException {
+        Board board = new Board();
+        // moves after the last snapshot of the current game and where each of them ends
+        int[] moves = new int[SNAPSHOT_INTERVAL];
+        long[] ends = new long[SNAPSHOT_INTERVAL];
+        int count = 0;
+        long validEnd;
+        boolean fromSnapshot = false;
+
+        Reader reader = new Reader(channel);
+        validEnd = reader.offset();
+        loop:
+        while (true) {
+            switch (reader.next()) {
+                case Reader.NEW_GAME -> {
+                    inGame = true;
+                    fromSnapshot = false;
+                    count = 0;
+                    gamePly = 0;
+                }
+                case Reader.SNAPSHOT -> {
+                    if (!inGame) break loop;
+                    reader.snapshot(board);
+                    fromSnapshot = true;
+                    count = 0;
+                    gamePly = reader.ply();
+                }
+                case Reader.MOVE -> {
+                    if (!inGame) break loop;
+                    if (count == moves.length) {
+                        moves = Arrays.copyOf(moves, count * 2);
+                        ends = Arrays.copyOf(ends, count * 2);
+                    }
+                    moves[count] = reader.move();
+                    ends[count++] = reader.offset();
+                    gamePly++;
+                    continue;
+                }
+                case Reader.END_GAME -> inGame = false;
+                default -> {
+                    break loop;
+                }
+            }
+            validEnd = reader.offset();
+        }
+
+        if (inGame) {
+            if (!fromSnapshot) board.setBoard();
+            // a move the rules reject is as much a sign of a torn write as a bad checksum
+            for (int i = 0; i < count; i++) {
+                int move = board.findMove(Move.from(moves[i]), Move.to(moves[i]));
+                if (move == 0 || move != moves[i]) {
+                    gamePly -= count - i;
+                    break;
+                }
+                board.makeMove(move);
+                validEnd = ends[i];
+            }
+            recovered = board;
+        }
+        channel.truncate(validEnd);
+        channel.position(validEnd);
+        // a fresh snapshot, so the next recovery does not replay these moves again
+        if (inGame && count > 0) {
+            putSnapshot(recovered);
+            sync();
+        }
+    }
+
+    /**
+     * Sequential reader of a journal, returning one record per call to {@link #next()}.
+     * <p>
+     * The file is read in large blocks into one buffer and moves are decoded straight from it, so
+     * reading allocates nothing per record. Snapshots are checked against their CRC but only
+     * decoded into a board on request. Reading stops at the end of the file or at the first
+     * record that is torn or corrupt, see {@link #corrupt()}.
+     */
+    static final class Reader implements Closeable {
+
+        // record kinds returned by next()
+        static final int END = 0;
+        static final int MOVE = 1;
+        static final int NEW_GAME = 2;
+        static final int SNAPSHOT = 3;
+        static final int END_GAME = 4;
+
+        private final FileChannel channel;
+        private final boolean owned;
+        private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        private final byte[] frame = new byte[MAX_SNAPSHOT_BYTES];
+        private final CRC32 crc = new CRC32();
+        private long offset;
+        private boolean corrupt;
+        private int move;
+        private int result;
+        private int frameLength;
+
+        /**
+         * Opens a journal for reading.
+         *
+         * @param path the journal file
+         * @throws IOException if the file cannot be read or is not a journal
+         */
+        Reader(Path path) throws IOException {
+            this(FileChannel.open(path, StandardOpenOption.READ), true);
+        }
+
+        private Reader(FileChannel channel) throws IOException {
+            this(channel, false);
+        }
+
+        private Reader(FileChannel channel, boolean owned) throws IOException {
+            this.channel = channel;
+            this.owned = owned;
+            channel.position(0);
+            buffer.limit(0);
+            for (byte expected : MAGIC) {
+                if (!ensure(1) || buffer.get() != expected) {
+                    if (owned) channel.close();
+                    throw new IOException("not a game journal");
+                }
+            }
+            offset = MAGIC.length;
+        }
+
+        /**
+         * Reads the next record.
+         *
+         * @return the kind of record, {@link #END} at the end of the file or of the intact records
+         * @throws IOException if the file cannot be read
+         */
+        int next() throws IOException {
+            if (!ensure(2)) return END;
+            int word = buffer.getShort() & 0xFFFF;
+            if (Move.from(word) != Move.to(word)) {
+                move = word;
+                offset += 2;
+                return MOVE;
+            }
+            switch (word & 0xFFF) {
+                case GameJournal.NEW_GAME -> {
+                    offset += 2;
+                    return NEW_GAME;
+                }
+                case GameJournal.END_GAME -> {
+                    result = word >>> 12;
+                    offset += 2;
+                    return END_GAME;
+                }
+                case GameJournal.SNAPSHOT -> {
+                    return readSnapshot(word);
+                }
+                default -> {
+                    corrupt = true;
+                    return END;
+                }
+            }
+        }
+
+        /**
+         * @return the move read by the last call to {@link #next()}, without the board's flags checked
+         */
+        int move() {
+            return move;
+        }
+
+        /**
+         * @return the result of the game ended by the last record, one of the result constants
+         */
+        int result() {
+            return result;
+        }
+
+        /**
+         * @return the ply of the game at the last snapshot read
+         */
+        int ply() {
+            return (frame[frameLength - 2] & 0xFF) << 8 | frame[frameLength - 1] & 0xFF;
+        }
+
+        /**
+         * Sets a board up in the position of the last snapshot read. The board's move history is cleared.
+         *
+         * @param board the board to set up
+         */
+        void snapshot(Board board) {
+            long occupied = 0;
+            for (int i = 2; i < 10; i++) occupied = occupied << 8 | frame[i] & 0xFF;
+            char[] letters = new char[64];
+            int nibble = 0;
+            for (long remaining = occupied; remaining != 0; remaining &= remaining - 1) {
+                int index = frame[10 + nibble / 2] >> (nibble % 2 * 4) & 15;
+                char letter = "PNBRQK".charAt(index >> 1);
+                letters[Long.numberOfTrailingZeros(remaining)] = (index & 1) == 0 ? letter : Character.toLowerCase(letter);
+                nibble++;
+            }
+            StringBuilder fen = new StringBuilder(90);
+            for (int row = 7; row >= 0; row--) {
+                int empty = 0;
+                for (int col = 0; col < 8; col++) {
+                    char letter = letters[row * 8 + col];
+                    if (letter == 0) {
+                        empty++;
+                        continue;
+                    }
+                    if (empty > 0) fen.append(empty);
+                    empty = 0;
+                    fen.append(letter);
+                }
+                if (empty > 0) fen.append(empty);
+                if (row > 0) fen.append('/');
+            }
+            fen.append(frame[frameLength - 3] == 0 ? " w - - 0 " : " b - - 0 ").append(ply() / 2 + 1);
+            board.setFen(fen, 0, fen.length());
+        }
+
+        /**
+         * @return {@code true} if reading stopped at a torn or corrupt record rather than the end of the file
+         */
+        boolean corrupt() {
+            return corrupt;
+        }
+
+        /**
+         * @return the offset just past the last record read
+         */
+        long offset() {
+            return offset;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (owned) channel.close();
+        }
+
+        private int readSnapshot(int word) throws IOException {
+            frame[0] = (byte) (word >>> 8);
+            frame[1] = (byte) word;
+            if (!ensure(8)) return torn();
+            buffer.get(frame, 2, 8);
+            long occupied = 0;
+            for (int i = 2; i < 10; i++) occupied = occupied << 8 | frame[i] & 0xFF;
+            int pieceBytes = (Long.bitCount(occupied) + 1) / 2;
+            if (pieceBytes > 16) return torn();
+            frameLength = 10 + pieceBytes + 3;
+            if (!ensure(frameLength - 10 + 4)) return torn();
+            buffer.get(frame, 10, frameLength - 10);
+            crc.reset();
+            crc.update(frame, 0, frameLength);
+            if (buffer.getInt() != (int) crc.getValue()) return torn();
+            offset += frameLength + 4;
+            return SNAPSHOT;
+        }
+
+        private int torn() {
+            corrupt = true;
+            return END;
+        }
+
+        /**
+         * Makes sure the buffer holds at least {@code bytes} unread bytes, reading more of the file if needed.
+         *
+         * @return {@code false} if the file ends first
+         */
+        private boolean ensure(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) return true;
+            buffer.compact();
+            while (buffer.position() < bytes) {
+                if (channel.read(buffer) < 0) {
+                    buffer.flip();
+                    if (buffer.hasRemaining()) corrupt = true;
+                    return false;
+                }
+            }
+            buffer.flip();
+            return true;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * TCP game server hosting many independent games in one JVM, one {@link Board} per connection.
+ * <p>
+ * Every connection is a session with its own board, running on its own thread from
+ * {@link #newSessionExecutor()}: a virtual thread when the runtime has them, otherwise a platform
+ * thread with a small stack. A session only holds its board, a move buffer and small stream
+ * buffers, and a game is reset after {@link #MAX_PLIES} plies so the undo history cannot grow
+ * without bound.
+ * <p>
+ * The protocol is plain text. The client sends moves in coordinate notation such as "e2e4",
+ * separated by any whitespace, and gets one reply line per move: {@code ok} when the move was
+ * played, {@code illegal} when it was rejected, or {@code end} when it was played and finished
+ * the game, after which a new game starts on the same connection. The word {@code new} starts a
+ * new game at any time and is answered with {@code ok}.
+ * <p>
+ * The time from reading a move to writing its reply is recorded, and the number of sessions,
+ * the moves per second and the p50 and p99 move latencies are printed every few seconds.
+ */
+public class GameServer {
+
+    // plies after which a game is ended, bounding the undo history kept per session
+    static final int MAX_PLIES = 1024;
+
+    // seconds between statistics lines
+    private static final int REPORT_SECONDS = 5;
+
+    // replies, written as bytes so no strings are created per move
+    private static final byte[] OK = "ok\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] ILLEGAL = "illegal\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] END = "end\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final ExecutorService sessions = newSessionExecutor();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final AtomicInteger active = new AtomicInteger();
+    private final LongAdder moves = new LongAdder();
+
+    /**
+     * Accepts connections on a port until the process is stopped.
+     *
+     * @param port the TCP port to listen on
+     * @throws IOException if the port cannot be opened
+     */
+    static void run(int port) throws IOException {
+        new GameServer().serve(port);
+    }
+
+    private void serve(int port) throws IOException {
+        try (ServerSocket server = new ServerSocket(port, 4096)) {
+            System.out.println("listening on port " + server.getLocalPort());
+            Thread reporter = new Thread(this::report, "server-report");
+            reporter.setDaemon(true);
+            reporter.start();
+
+            while (true) {
+                Socket socket = server.accept();
+                sessions.execute(() -> session(socket));
+            }
+        } finally {
+            sessions.shutdown();
+        }
+    }
+
+    /**
+     * Plays the moves of one connection on its own board until the client disconnects.
+     */
+    private void session(Socket socket) {
+        active.incrementAndGet();
+        Board game = new Board();
+        int[] buffer = new int[Board.MAX_MOVES];
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII), 256);
+            OutputStream out = socket.getOutputStream();
+
+            while (true) {
+                int token = ChessCLI.readMove(in);
+                if (token == ChessCLI.END_OF_INPUT) break;
+                long start = System.nanoTime();
+
+                byte[] reply;
+                if (token == ChessCLI.NEW_GAME) {
+                    game.setBoard();
+                    reply = OK;
+                } else {
+                    int move = token == ChessCLI.BAD_INPUT ? 0 : game.findMove(Move.from(token), Move.to(token));
+                    if (move == 0) {
+                        reply = ILLEGAL;
+                    } else {
+                        game.makeMove(move);
+                        moves.increment();
+                        // the game is over when the side to move has nothing left to play
+                        if (game.ply >= MAX_PLIES || game.generateMoves(game.whiteToMove, buffer) == 0) {
+                            game.setBoard();
+                            reply = END;
+                        } else {
+                            reply = OK;
+                        }
+                    }
+                }
+                out.write(reply);
+                latency.record(System.nanoTime() - start);
+            }
+        } catch (IOException e) {
+            // a dropped connection only ends its own session
+        } finally {
+            active.decrementAndGet();
+        }
+    }
+
+    /**
+     * Prints the number of sessions, the move rate and the move latencies every few seconds.
+     */
+    private void report() {
+        long last = 0;
+        while (true) {
+            try {
+                Thread.sleep(REPORT_SECONDS * 1000L);
+            } catch (InterruptedException e) {
+                return;
+            }
+            long total = moves.sum();
+            System.out.printf("sessions %d, moves %d, %d moves/s, latency p50 %d us, p99 %d us%n",
+                    active.get(), total, (total - last) / REPORT_SECONDS,
+                    latency.percentile(0.50) / 1000, latency.percentile(0.99) / 1000);
+            latency.clear();
+            last = total;
+        }
+    }
+
+    /**
+     * Creates an executor running every task on a new thread: a virtual thread when the runtime
+     * supports them, otherwise a daemon platform thread with a 256 KB stack so thousands of
+     * sessions still fit in memory.
+     *
+     * @return the executor, one thread per task
+     */
+    static ExecutorService newSessionExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger created = new AtomicInteger();
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(null, task, "session-" + created.incrementAndGet(), 256 * 1024);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
@@ -14,7 +14,7 @@ public class Horse extends Piece{
      * @param white {@code true} if the horse is white, {@code false} if black
      */
     Horse(boolean white){
-        super(true, white);
+        super(true, white, Bitboards.HORSE);
     }
 
     /**
@@ -49,9 +49,6 @@ public class Horse extends Piece{
      */
     @Override
     public String toString() {
-        String colour;
-        if (this.white) colour = "W";
-        else colour = "B";
-        return colour + "H";
+        return white ? "WH" : "BH";
     }
 }
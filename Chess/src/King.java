@@ -13,7 +13,7 @@ public class King extends Piece {
      * @param white {@code true} if the king is white, {@code false} if black
      */
     King(boolean white){
-        super(true, white);
+        super(true, white, Bitboards.KING);
     }
 
     /**
@@ -48,10 +48,7 @@ public class King extends Piece {
      */
     @Override
     public String toString() {
-        String colour;
-        if (this.white) colour = "W";
-        else colour = "B";
-        return colour + "K";
+        return white ? "WK" : "BK";
     }
 
 
@@ -0,0 +1,87 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread safe histogram of latencies in nanoseconds with fixed memory, used for percentiles.
+ * <p>
+ * Values are counted in log-linear buckets: each power of two is split into 16 equal buckets,
+ * so a reported percentile is never more than 1/16 (about 6%) above the true value while the
+ * whole range up to {@code Long.MAX_VALUE} fits in under a thousand counters. Recording is one
+ * atomic increment, so any number of threads can share a histogram.
+ */
+public class LatencyHistogram {
+
+    // buckets per power of two, as a shift
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    private final AtomicLongArray counts = new AtomicLongArray((64 - SUB_BITS + 1) * SUB_BUCKETS);
+
+    /**
+     * Counts one latency.
+     *
+     * @param nanos the latency in nanoseconds, negative values count as 0
+     */
+    void record(long nanos) {
+        counts.incrementAndGet(bucket(Math.max(0, nanos)));
+    }
+
+    /**
+     * @return the number of latencies recorded
+     */
+    long count() {
+        long total = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * Returns the latency below which the given fraction of the recorded latencies fall.
+     *
+     * @param fraction the percentile as a fraction, e.g. 0.99 for p99
+     * @return the upper bound of the bucket holding that percentile in nanoseconds, 0 if empty
+     */
+    long percentile(double fraction) {
+        long total = count();
+        if (total == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(total * fraction));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) return upperBound(i);
+        }
+        return upperBound(counts.length() - 1);
+    }
+
+    /**
+     * Forgets all recorded latencies.
+     */
+    void clear() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+    }
+
+    /**
+     * Maps a value to its bucket: values below 16 have a bucket each, larger values are split by
+     * their highest set bit and the four bits below it.
+     */
+    private static int bucket(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * Returns the largest value counted in a bucket.
+     */
+    private static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        long width = 1L << (exponent - SUB_BITS);
+        long lower = (1L << exponent) + (bucket % SUB_BUCKETS) * width;
+        return lower + width - 1;
+    }
+}
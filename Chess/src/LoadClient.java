@@ -0,0 +1,132 @@
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Load generator for {@link GameServer}, playing many random games at once over separate connections.
+ * <p>
+ * Every game keeps its own board to pick random legal moves, sends them one at a time and waits
+ * for the reply, recording the round trip time. All connections are opened before any move is
+ * sent, so the server really holds the requested number of sessions at the same time. When the
+ * run ends the moves per second and the p50 and p99 round trip times are printed.
+ */
+public class LoadClient {
+
+    private static final byte[] NEW_GAME = "new\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder moves = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final AtomicInteger failed = new AtomicInteger();
+
+    /**
+     * Plays random games against a server and prints the throughput and latencies.
+     *
+     * @param host    the server host
+     * @param port    the server port
+     * @param games   the number of concurrent games, one connection each
+     * @param seconds how long to play for
+     * @throws InterruptedException if interrupted while waiting for the games
+     */
+    static void run(String host, int port, int games, int seconds) throws InterruptedException {
+        new LoadClient().play(host, port, games, seconds);
+    }
+
+    private void play(String host, int port, int games, int seconds) throws InterruptedException {
+        ExecutorService executor = GameServer.newSessionExecutor();
+        CountDownLatch connected = new CountDownLatch(games);
+        CountDownLatch finished = new CountDownLatch(games);
+        long[] deadline = new long[1];
+        CountDownLatch started = new CountDownLatch(1);
+
+        for (int i = 0; i < games; i++) {
+            long seed = i;
+            executor.execute(() -> {
+                try (Socket socket = new Socket(host, port)) {
+                    socket.setTcpNoDelay(true);
+                    connected.countDown();
+                    started.await();
+                    game(socket, new Random(seed), deadline[0]);
+                } catch (IOException e) {
+                    failed.incrementAndGet();
+                    connected.countDown();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    finished.countDown();
+                }
+            });
+        }
+
+        connected.await();
+        System.out.printf("%d games connected, %d failed%n", games - failed.get(), failed.get());
+        long start = System.nanoTime();
+        deadline[0] = start + seconds * 1_000_000_000L;
+        started.countDown();
+        finished.await();
+        long elapsed = Math.max(1, System.nanoTime() - start);
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.SECONDS);
+
+        System.out.printf("moves %d, rejected %d, %d moves/s, round trip p50 %d us, p99 %d us%n",
+                moves.sum(), rejected.sum(), moves.sum() * 1_000_000_000L / elapsed,
+                latency.percentile(0.50) / 1000, latency.percentile(0.99) / 1000);
+    }
+
+    /**
+     * Sends random legal moves over one connection until the deadline.
+     */
+    private void game(Socket socket, Random random, long deadline) throws IOException {
+        InputStream in = new BufferedInputStream(socket.getInputStream(), 64);
+        OutputStream out = socket.getOutputStream();
+        Board board = new Board();
+        int[] buffer = new int[Board.MAX_MOVES];
+        byte[] request = new byte[5];
+        request[4] = '\n';
+
+        while (System.nanoTime() < deadline) {
+            int count = board.generateMoves(board.whiteToMove, buffer);
+            int move = buffer[random.nextInt(count)];
+            int from = Move.from(move);
+            int to = Move.to(move);
+            request[0] = (byte) ('a' + (from & 7));
+            request[1] = (byte) ('1' + (from >> 3));
+            request[2] = (byte) ('a' + (to & 7));
+            request[3] = (byte) ('1' + (to >> 3));
+
+            long start = System.nanoTime();
+            out.write(request);
+            int reply = in.read();
+            int c = reply;
+            while (c >= 0 && c != '\n') c = in.read();
+            if (c < 0) return;
+            latency.record(System.nanoTime() - start);
+
+            // replies are told apart by their first letter: ok, illegal or end
+            if (reply == 'o') {
+                board.makeMove(move);
+                moves.increment();
+            } else if (reply == 'e') {
+                board.setBoard();
+                moves.increment();
+            } else {
+                // the boards disagree, start both again
+                rejected.increment();
+                board.setBoard();
+                out.write(NEW_GAME);
+                while ((c = in.read()) >= 0 && c != '\n') {
+                    // skip the reply to new
+                }
+            }
+        }
+    }
+}
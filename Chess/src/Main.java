@@ -1,65 +1,480 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
 /**
  * Main class for running the chess game.
  * <p>
  * This class contains the main game loop where players alternate turns between
  * white and black, inputting moves for their respective pieces. The game continues
+ * until checkmate or stalemate. Either side can instead be played by the {@code Engine}.
  */
 public class Main {
 
+    // chooses between the book moves of a position
+    private static final Random BOOK_RANDOM = new Random();
+
+    // perft node counts of the start position by depth, for rules without castling, en passant or
+    // promotion: the published counts up to depth 4 and the depth 5 count less its 258 en passant captures
+    private static final long[] PERFT = {1, 20, 400, 8902, 197281, 4865351};
+
     /**
      * The main method where the chess game starts and is controlled.
      * <p>
      * This method sets up a {@code ChessCLI} object for input handling and a {@code Board} object to manage the game state.
      * The game alternates between white and black players, prompting for piece selection
-     * and destination, validating the moves, and updating the board. The game runs indefinitely.
+     * and destination, validating the moves, and updating the board. The game runs until checkmate or stalemate.
+     * A menu at the start chooses between a two player game and a game against the engine.
      *
-     * @param args Command line arguments (not used in this game).
+     * @param args Command line arguments, {@code perft <depth>} runs and checks the move generator benchmark and
+     *             {@code smp <depth> <threads>} the parallel search benchmark and
+     *             {@code pgn <input> <output|-> [threads]} validates a PGN archive instead of a game.
+     *             {@code headless} plays moves piped to standard input without prompts or board output,
+     *             {@code replay [diff]} plays them the same way printing the board after every move,
+     *             {@code uci} speaks the Universal Chess Interface protocol on standard input and output,
+     *             {@code serve <port>} hosts games over TCP,
+     *             {@code load <host> <port> <games> <seconds>} plays random games against such a server and
+     *             {@code book <games> <book> [plies]} builds an opening book from games in headless format and
+     *             {@code tb <directory> <signature> [threads]} builds endgame tablebases such as {@code KRvK} and
+     *             {@code sprt <engine a> <engine b> [key=value ...]} plays a self-play match stopped by an SPRT.
+     *             {@code archive <games> <journal>} appends games in headless format to a game journal and
+     *             {@code journal <journal>} replays every game of one,
+     *             {@code index <journal> <index> [threads]} builds a position index of its games and
+     *             {@code position <index> [moves ...]} looks up the position after the moves in one.
+     *             The interactive game is journaled
+     *             to the file named by the {@code journal} property, if set, and resumed from it after a crash.
+     *             The ai plays from the opening book named by the {@code book} system property and probes
+     *             the tablebases in the directory named by the {@code tablebases} property, if set.
+     * @throws IOException if a batch mode cannot read its input or write its output.
+     * @throws InterruptedException if the load client is interrupted while waiting for its games.
      */
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException, InterruptedException {
+
+        if (args.length == 2 && args[0].equals("perft")) {
+            if (!perft(Integer.parseInt(args[1]))) System.exit(1);
+            return;
+        }
+        if ((args.length == 3 || args.length == 4) && args[0].equals("pgn")) {
+            int threads = args.length == 4 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+            PgnValidator.run(Path.of(args[1]), args[2], threads);
+            return;
+        }
+        if ((args.length == 3 || args.length == 4) && args[0].equals("book")) {
+            int plies = args.length == 4 ? Integer.parseInt(args[3]) : 16;
+            System.out.println(OpeningBook.build(Path.of(args[1]), Path.of(args[2]), plies) + " book entries written");
+            return;
+        }
+        if ((args.length == 3 || args.length == 4) && args[0].equals("tb")) {
+            int threads = args.length == 4 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+            TablebaseGenerator.run(args[2], Path.of(args[1]), threads);
+            return;
+        }
+        if (args.length >= 3 && args[0].equals("sprt")) {
+            Tournament.run(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length == 3 && args[0].equals("archive")) {
+            archive(Path.of(args[1]), Path.of(args[2]));
+            return;
+        }
+        if (args.length == 2 && args[0].equals("journal")) {
+            readJournal(Path.of(args[1]));
+            return;
+        }
+        if ((args.length == 3 || args.length == 4) && args[0].equals("index")) {
+            int threads = args.length == 4 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+            PositionIndex.Summary summary = PositionIndex.build(Path.of(args[1]), Path.of(args[2]), threads);
+            if (summary.damagedAt >= 0) System.out.println("journal is damaged after offset " + summary.damagedAt);
+            System.out.println(summary);
+            return;
+        }
+        if (args.length >= 2 && args[0].equals("position")) {
+            position(new PositionIndex(Path.of(args[1])), Arrays.copyOfRange(args, 2, args.length));
+            return;
+        }
+        if (args.length == 1 && args[0].equals("uci")) {
+            Uci.run();
+            return;
+        }
+        if (args.length == 2 && args[0].equals("serve")) {
+            GameServer.run(Integer.parseInt(args[1]));
+            return;
+        }
+        if (args.length == 5 && args[0].equals("load")) {
+            LoadClient.run(args[1], Integer.parseInt(args[2]), Integer.parseInt(args[3]), Integer.parseInt(args[4]));
+            return;
+        }
+        if (args.length == 1 && args[0].equals("headless")) {
+            headless();
+            return;
+        }
+        if ((args.length == 1 || args.length == 2) && args[0].equals("replay")) {
+            replay(args.length == 2 && args[1].equals("diff"));
+            return;
+        }
+        if (args.length == 3 && args[0].equals("smp")) {
+            ParallelSearch.benchmark(Integer.parseInt(args[1]), Integer.parseInt(args[2]), 256);
+            return;
+        }
 
         // chessCLI object for input validation and system in operations
         ChessCLI input = new ChessCLI();
 
-        // TODO add menu if needed... maybe two player or ai player game
         System.out.println("NEW GAME\n------------------------------");
 
+        // menu: two player or ai player game
+        int mode = input.getUserChoice("Select game: 1 two player, 2 play white against ai, 3 play black against ai", 3);
+        Engine engine = null;
+        OpeningBook book = null;
+        long thinkMillis = 0;
+        if (mode != 1) {
+            engine = new Engine(new TranspositionTable(64, TranspositionTable.Replacement.DEPTH_PREFERRED));
+            if (System.getProperty("book") != null) book = new OpeningBook(Path.of(System.getProperty("book")));
+            if (System.getProperty("tablebases") != null) engine.setTablebase(new Tablebase(Path.of(System.getProperty("tablebases"))));
+            thinkMillis = input.getUserChoice("Please enter ai thinking time in seconds (1-60)", 60) * 1000L;
+        }
+        boolean aiWhite = mode == 3;
+        boolean aiBlack = mode == 2;
+
         Board game = new Board();
+        // every move is journaled and durable at once, an unfinished game is picked up again
+        GameJournal journal = null;
+        if (System.getProperty("journal") != null) {
+            journal = new GameJournal(Path.of(System.getProperty("journal")), 1);
+            if (journal.recovered() != null) {
+                game = journal.recovered();
+                System.out.println("resuming unfinished game from the journal");
+            } else {
+                journal.newGame();
+            }
+        }
+        // one renderer for the whole game, each board goes out in a single write
+        BoardRenderer renderer = new BoardRenderer(false);
         // print game initial board state
-        System.out.println(game);
-
-        //break on win, quit
-        boolean successful = false;
+        renderer.write(game, System.out);
+        System.out.flush();
 
-        // Game loop/flow control
+        // Game loop/flow control, white moves first
+        boolean white = game.whiteToMove;
         while (true){
-            successful = false;
-
-            // white turn
-            while(!successful) {
-                input.print("WHITE move; select a piece\n");
-                successful = game.takeTurn(true,
-                        input.getUserChar("Please enter column of piece"),
-                        input.getUserInt("Please enter row of piece"),
-                        input.getUserChar("Please enter destination column"),
-                        input.getUserInt("Please enter destination row"));
-
-                if (!successful) input.print("Not valid move please try again\n\n");
+            if (white ? aiWhite : aiBlack) {
+                if (!engineTurn(engine, book, game, white, thinkMillis)) break;
+            } else {
+                playerTurn(input, game, white);
+            }
+            if (journal != null) journal.append(game.lastMove(), game);
+            renderer.write(game, System.out);
+            System.out.flush();
+            // the side to move now has no legal move: checkmate or stalemate
+            if (!game.hasLegalMove()) {
+                if (!game.inCheck()) System.out.println("STALEMATE, DRAW");
+                else if (white) System.out.println("CHECKMATE, WHITE WINS");
+                else System.out.println("CHECKMATE, BLACK WINS");
+                if (journal != null) journal.endGame(!game.inCheck() ? GameJournal.DRAW : white ? GameJournal.WHITE_WINS : GameJournal.BLACK_WINS);
+                break;
+            }
+            if (game.inCheck()) System.out.println("CHECK");
+            white = !white;
+        }
+        if (journal != null) journal.close();
+
+    }
+
+    /**
+     * Prompts the player for moves until one is accepted by the board.
+     *
+     * @param input The CLI used to read the move.
+     * @param game  The board to move on.
+     * @param white {@code true} if it is white's turn.
+     */
+    private static void playerTurn(ChessCLI input, Board game, boolean white) {
+        MoveStatus status = null;
+        while(status != MoveStatus.LEGAL) {
+            input.print((white ? "WHITE" : "BLACK") + " move; select a piece\n");
+            status = game.takeTurn(white,
+                    input.getUserChar("Please enter column of piece"),
+                    input.getUserInt("Please enter row of piece"),
+                    input.getUserChar("Please enter destination column"),
+                    input.getUserInt("Please enter destination row"));
+
+            if (status != MoveStatus.LEGAL) input.print(status.message() + "\nNot valid move please try again\n\n");
+        }
+    }
+
+    /**
+     * Lets the engine pick a move within the time budget and plays it, printing the search statistics.
+     * Positions found in the opening book are answered with a book move straight away.
+     *
+     * @param engine The engine playing this side.
+     * @param book   The opening book, or {@code null} to always search.
+     * @param game   The board to move on.
+     * @param white  {@code true} if the engine plays white.
+     * @param millis The thinking time in milliseconds.
+     * @return {@code false} if the engine had no move to play.
+     */
+    private static boolean engineTurn(Engine engine, OpeningBook book, Board game, boolean white, long millis) {
+        int move = book != null ? book.move(game, BOOK_RANDOM) : 0;
+        String source = "book";
+        if (move == 0) {
+            move = engine.search(game, Engine.MAX_PLY, millis);
+            source = engine.report();
+        }
+        if (move == 0) {
+            System.out.println((white ? "WHITE" : "BLACK") + " has no moves, game over");
+            return false;
+        }
+        int from = Move.from(move);
+        int to = Move.to(move);
+        System.out.println((white ? "WHITE" : "BLACK") + " ai plays " + Move.toString(move) + " (" + source + ")");
+        return game.takeTurn(white, (char) ('a' + (from & 7)), (from >> 3) + 1, (char) ('a' + (to & 7)), (to >> 3) + 1) == MoveStatus.LEGAL;
+    }
+
+    /**
+     * Plays whole moves such as "e2e4" read from standard input, with white and black alternating.
+     * <p>
+     * No prompts or boards are printed. Each rejected move produces one line, and the final position
+     * is printed as FEN together with the number of moves played and rejected and the moves per second.
+     * The word "new" starts a fresh game, so many scripted games can be piped through one process.
+     *
+     * @throws IOException if standard input cannot be read.
+     */
+    private static void headless() throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.US_ASCII), 1 << 16);
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.US_ASCII), 1 << 16);
+        Board game = new Board();
+        long played = 0;
+        long rejected = 0;
+        long games = 1;
+        long start = System.nanoTime();
+
+        while (true) {
+            int token = ChessCLI.readMove(in);
+            if (token == ChessCLI.END_OF_INPUT) break;
+            if (token == ChessCLI.NEW_GAME) {
+                // nothing to reset if the current game has not started
+                if (game.ply > 0) {
+                    game.setBoard();
+                    games++;
+                }
+                continue;
             }
 
-            System.out.println(game);
-            successful = false;
-            while(!successful) {
-                input.print("BLACK move; select a piece\n");
-                successful = game.takeTurn(false,
-                        input.getUserChar("Please enter column of piece"),
-                        input.getUserInt("Please enter row of piece"),
-                        input.getUserChar("Please enter destination column"),
-                        input.getUserInt("Please enter destination row"));
-
-                if (!successful) input.print("Not valid move please try again\n\n");
+            int move = token == ChessCLI.BAD_INPUT ? 0 : game.findMove(Move.from(token), Move.to(token));
+            if (move == 0) {
+                rejected++;
+                out.write("rejected " + (token == ChessCLI.BAD_INPUT ? "input" : Move.toString(token))
+                        + " in game " + games + " at ply " + (game.ply + 1) + "\n");
+                continue;
             }
-            System.out.println(game);
+            game.makeMove(move);
+            played++;
         }
 
+        long elapsed = Math.max(1, System.nanoTime() - start);
+        out.write(game.toFen() + "\n");
+        out.write(String.format("games %d, moves %d, rejected %d, %d moves/s%n",
+                games, played, rejected, (played + rejected) * 1_000_000_000L / elapsed));
+        out.flush();
+    }
+
+    /**
+     * Plays whole moves read from standard input like {@link #headless}, printing the board after
+     * every move through one {@link BoardRenderer} and one buffered stream.
+     * <p>
+     * Rejected moves are counted rather than printed, so the output is only boards. In diff mode
+     * the first board is drawn in full and later ones only redraw the changed cells, for watching
+     * a replay in a terminal. The number of boards printed per second is written last.
+     *
+     * @param diff {@code true} to redraw only the changed cells.
+     * @throws IOException if standard input cannot be read or standard output written.
+     */
+    private static void replay(boolean diff) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.US_ASCII), 1 << 16);
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 1 << 16);
+        BoardRenderer renderer = new BoardRenderer(diff);
+        Board game = new Board();
+        long boards = 0;
+        long rejected = 0;
+        long start = System.nanoTime();
+
+        while (true) {
+            int token = ChessCLI.readMove(in);
+            if (token == ChessCLI.END_OF_INPUT) break;
+            if (token == ChessCLI.NEW_GAME) {
+                game.setBoard();
+                continue;
+            }
+            int move = token == ChessCLI.BAD_INPUT ? 0 : game.findMove(Move.from(token), Move.to(token));
+            if (move == 0) {
+                rejected++;
+                continue;
+            }
+            game.makeMove(move);
+            renderer.write(game, out);
+            boards++;
+            // a live display wants every move, a redirect only full buffers
+            if (diff) out.flush();
+        }
+
+        long elapsed = Math.max(1, System.nanoTime() - start);
+        out.write(String.format("%nboards %d, rejected %d, %d boards/s%n",
+                boards, rejected, boards * 1_000_000_000L / elapsed).getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+
+    /**
+     * Appends the games of a file in headless format to a game journal and prints the size of the
+     * journal per move against the text. The journal is only forced to disk once, when it is closed.
+     *
+     * @param games  The games, moves such as "e2e4" with games separated by "new".
+     * @param output The journal to append to.
+     * @throws IOException if the games cannot be read or the journal written.
+     */
+    private static void archive(Path games, Path output) throws IOException {
+        long before = Files.exists(output) ? Files.size(output) : 0;
+        long moves = 0;
+        long rejected = 0;
+        Board game = new Board();
+        try (BufferedReader in = Files.newBufferedReader(games, StandardCharsets.US_ASCII);
+             GameJournal journal = new GameJournal(output, Integer.MAX_VALUE)) {
+            // a game left unfinished in the journal is closed, the first move starts a new one
+            if (journal.recovered() != null) journal.endGame(GameJournal.NO_RESULT);
+            while (true) {
+                int token = ChessCLI.readMove(in);
+                if (token == ChessCLI.END_OF_INPUT) break;
+                if (token == ChessCLI.NEW_GAME) {
+                    if (game.ply > 0) {
+                        journal.endGame(GameJournal.NO_RESULT);
+                        game.setBoard();
+                    }
+                    continue;
+                }
+                int move = token == ChessCLI.BAD_INPUT ? 0 : game.findMove(Move.from(token), Move.to(token));
+                if (move == 0) {
+                    rejected++;
+                    continue;
+                }
+                game.makeMove(move);
+                journal.append(move, game);
+                moves++;
+            }
+            if (game.ply > 0) journal.endGame(GameJournal.NO_RESULT);
+        }
+        long bytes = Files.size(output) - before;
+        System.out.printf("%d moves, %d rejected, %d journal bytes (%.2f per move), %d text bytes (%.2f per move)%n",
+                moves, rejected, bytes, (double) bytes / Math.max(1, moves),
+                Files.size(games), (double) Files.size(games) / Math.max(1, moves));
+    }
+
+    /**
+     * Replays every game of a journal on a board and prints the games, moves and moves per second.
+     * Moves are made as read, the journal having been checked when it was written.
+     *
+     * @param path The journal.
+     * @throws IOException if the journal cannot be read.
+     */
+    private static void readJournal(Path path) throws IOException {
+        Board game = new Board();
+        long games = 0;
+        long moves = 0;
+        long start = System.nanoTime();
+        try (GameJournal.Reader reader = new GameJournal.Reader(path)) {
+            int record;
+            while ((record = reader.next()) != GameJournal.Reader.END) {
+                if (record == GameJournal.Reader.MOVE) {
+                    game.makeMove(reader.move());
+                    moves++;
+                } else if (record == GameJournal.Reader.NEW_GAME) {
+                    game.setBoard();
+                    games++;
+                }
+            }
+            if (reader.corrupt()) System.out.println("journal is damaged after offset " + reader.offset());
+        }
+        long elapsed = Math.max(1, System.nanoTime() - start);
+        System.out.printf("games %d, moves %d, %d moves/s%n", games, moves, moves * 1_000_000_000L / elapsed);
+    }
+
+    /**
+     * Plays moves from the start position and prints what the games of an index played from the
+     * position reached: the games, their results and the moves with how often each was played.
+     *
+     * @param index The position index.
+     * @param moves Moves in coordinate notation, such as {@code e2e4}.
+     */
+    private static void position(PositionIndex index, String[] moves) {
+        Board game = new Board();
+        for (String text : moves) {
+            int move = 0;
+            if (text.length() >= 4) {
+                int from = (text.charAt(1) - '1') * 8 + text.charAt(0) - 'a';
+                int to = (text.charAt(3) - '1') * 8 + text.charAt(2) - 'a';
+                if (from >= 0 && from < 64 && to >= 0 && to < 64) move = game.findMove(from, to);
+            }
+            if (move == 0) {
+                System.out.println("illegal move " + text);
+                return;
+            }
+            game.makeMove(move);
+        }
+
+        PositionIndex.Stats stats = new PositionIndex.Stats();
+        long start = System.nanoTime();
+        boolean found = index.lookup(game.hash, stats);
+        long elapsed = System.nanoTime() - start;
+        if (!found) {
+            System.out.printf("position not in the index (%d us)%n", elapsed / 1000);
+            return;
+        }
+        System.out.printf("%d games (+%d =%d -%d), %d occurrences (%d us)%n",
+                stats.games, stats.whiteWins, stats.draws, stats.blackWins, stats.entries, elapsed / 1000);
+        for (int i = 0; i < stats.moveCount; i++) {
+            System.out.printf("  %s %8d  +%d =%d -%d%n", Move.toString(stats.moves[i]), stats.played[i],
+                    stats.moveWhiteWins[i], stats.moveDraws[i], stats.moveBlackWins[i]);
+        }
+        StringBuilder games = new StringBuilder("games:");
+        for (int i = 0; i < Math.min(stats.entries, 20); i++) {
+            games.append(' ').append(index.game(stats.first + i)).append('@').append(index.ply(stats.first + i));
+        }
+        if (stats.entries > 20) games.append(" ...");
+        System.out.println(games);
+    }
+
+    /**
+     * Runs perft from the start position for every depth up to {@code maxDepth}, printing the
+     * node counts alongside the time taken and the nodes searched per second. Depths with a known
+     * count are marked PASS or FAIL.
+     *
+     * @param maxDepth The deepest perft to run.
+     * @return {@code false} if any node count differs from the known count for its depth.
+     */
+    private static boolean perft(int maxDepth) {
+        Board game = new Board();
+        boolean passed = true;
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            long start = System.nanoTime();
+            long nodes = game.perft(depth);
+            long elapsed = Math.max(1, System.nanoTime() - start);
+            String check = "";
+            if (depth < PERFT.length) {
+                check = nodes == PERFT[depth] ? " PASS" : " FAIL, expected " + PERFT[depth];
+                passed &= nodes == PERFT[depth];
+            }
+            System.out.printf("perft %d: %d nodes in %d ms (%d nps)%s%n",
+                    depth, nodes, elapsed / 1_000_000, nodes * 1_000_000_000L / elapsed, check);
+        }
+        return passed;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,71 @@
+/**
+ * Helpers for the compact primitive move encoding used by {@code Board}.
+ * <p>
+ * A move is packed into the low 16 bits of an {@code int} so move lists can be kept
+ * in plain {@code int[]} buffers without allocating objects:
+ * <pre>
+ *  bits  0-5   source square      (a1 = 0 ... h8 = 63)
+ *  bits  6-11  destination square
+ *  bits 12-15  flags, see {@link #CAPTURE} and {@link #DOUBLE_PUSH}
+ * </pre>
+ */
+public final class Move {
+
+    // destination holds an enemy piece
+    static final int CAPTURE = 1;
+
+    // pawn advancing two squares on its first move
+    static final int DOUBLE_PUSH = 2;
+
+    private Move() {
+    }
+
+    /**
+     * Packs a move into its integer form.
+     *
+     * @param from  the source square
+     * @param to    the destination square
+     * @param flags any combination of the flag constants
+     * @return the encoded move
+     */
+    static int encode(int from, int to, int flags) {
+        return from | (to << 6) | (flags << 12);
+    }
+
+    /**
+     * @param move an encoded move
+     * @return the source square of the move
+     */
+    static int from(int move) {
+        return move & 63;
+    }
+
+    /**
+     * @param move an encoded move
+     * @return the destination square of the move
+     */
+    static int to(int move) {
+        return (move >>> 6) & 63;
+    }
+
+    /**
+     * @param move an encoded move
+     * @return the flag bits of the move
+     */
+    static int flags(int move) {
+        return (move >>> 12) & 15;
+    }
+
+    /**
+     * Formats a move in coordinate notation, e.g. "e2e4".
+     *
+     * @param move an encoded move
+     * @return the move as a four character string
+     */
+    static String toString(int move) {
+        int from = from(move);
+        int to = to(move);
+        return "" + (char) ('a' + (from & 7)) + (char) ('1' + (from >> 3))
+                + (char) ('a' + (to & 7)) + (char) ('1' + (to >> 3));
+    }
+}
@@ -0,0 +1,42 @@
+/**
+ * Outcome of validating a move with {@link Board#validate}: either {@link #LEGAL} or the first
+ * rule the move breaks.
+ * <p>
+ * The board never prints; callers that talk to a player show {@link #message()}, and bulk
+ * validation stores the {@link #ordinal()} of each result in a {@code byte[]}, which
+ * {@link #of(int)} turns back into a status.
+ */
+enum MoveStatus {
+    LEGAL("legal move"),
+    NO_PIECE("no piece at location"),
+    WRONG_COLOUR("incorrect colour"),
+    UNREACHABLE("piece cannot reach location"),
+    BLOCKED("piece blocking path"),
+    NO_PAWN_TARGET("no piece for pawn to attack at location"),
+    OWN_PIECE("Same Team!"),
+    KING_IN_CHECK("king would be in check");
+
+    // values() copies its array on every call
+    private static final MoveStatus[] VALUES = values();
+
+    private final String message;
+
+    MoveStatus(String message) {
+        this.message = message;
+    }
+
+    /**
+     * @return the text shown to a player whose move was rejected for this reason
+     */
+    String message() {
+        return message;
+    }
+
+    /**
+     * @param ordinal the ordinal of a status, as stored by {@link Board#validateAll}
+     * @return the status
+     */
+    static MoveStatus of(int ordinal) {
+        return VALUES[ordinal];
+    }
+}
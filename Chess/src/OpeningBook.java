@@ -0,0 +1,200 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Opening book in this engine's own format, memory mapped and searched in place.
+ * <p>
+ * The file is a sorted array of 16 byte big-endian entries: the 64-bit position key, the move,
+ * a weight and 32 bits of learning data that are ignored. A position's moves are adjacent, so
+ * a lookup is a binary search for the first entry with the key followed by a short scan. The
+ * file is mapped read only with {@link FileChannel#map}, so nothing is loaded onto the heap,
+ * opening a book of any size is immediate and the pages are shared through the page cache by
+ * every JVM using the same book. Files over 1 GB are mapped in several windows.
+ * <p>
+ * The entry layout and move packing follow Polyglot: the destination column and row in bits
+ * 0-5 and the source column and row in bits 6-11. Positions are keyed by the {@link Zobrist}
+ * hash of the board, not by the Polyglot random table, so Polyglot {@code .bin} books cannot
+ * be read and books are built for this engine with {@link #build}. A book move is still checked
+ * against the legal moves before it is played, so an unrelated or corrupt book can never make
+ * an illegal move.
+ */
+public class OpeningBook {
+
+    // bytes per entry: key, move, weight and learn fields
+    static final int ENTRY_BYTES = 16;
+
+    // entries per mapped window, 1 GB of entries
+    private static final int WINDOW_SHIFT = 26;
+    private static final long WINDOW_ENTRIES = 1L << WINDOW_SHIFT;
+
+    private final ByteBuffer[] windows;
+    private final long entries;
+
+    /**
+     * Maps a book file. The file stays mapped until the book is garbage collected.
+     *
+     * @param path the book file
+     * @throws IOException if the file cannot be read or is not a whole number of entries
+     */
+    OpeningBook(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size % ENTRY_BYTES != 0) throw new IOException("not a book file: " + path);
+            entries = size / ENTRY_BYTES;
+            windows = new ByteBuffer[(int) ((entries + WINDOW_ENTRIES - 1) / WINDOW_ENTRIES)];
+            for (int i = 0; i < windows.length; i++) {
+                long start = i * WINDOW_ENTRIES * ENTRY_BYTES;
+                windows[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW_ENTRIES * ENTRY_BYTES, size - start));
+            }
+        }
+    }
+
+    /**
+     * @return the number of entries in the book
+     */
+    long size() {
+        return entries;
+    }
+
+    /**
+     * Picks a book move for the position, at random in proportion to the entry weights.
+     * The book is only read, so any number of threads can look up moves at once.
+     *
+     * @param board  the position, not modified and only used by the calling thread
+     * @param random the source of the choice between moves
+     * @return the encoded legal move (see {@link Move}), or 0 if the position is not in the book
+     */
+    int move(Board board, Random random) {
+        long first = find(board.hash);
+        if (first < 0) return 0;
+
+        long total = 0;
+        long last = first;
+        for (; last < entries && key(last) == board.hash; last++) {
+            total += weight(last);
+        }
+        long pick = total > 0 ? (long) (random.nextDouble() * total) : 0;
+        for (long entry = first; entry < last; entry++) {
+            pick -= weight(entry);
+            if (pick < 0 || entry == last - 1) return legal(board, move(entry));
+        }
+        return 0;
+    }
+
+    /**
+     * Finds the first entry with the given key by binary search.
+     *
+     * @param key the position key
+     * @return the index of the first entry with the key, or -1 if there is none
+     */
+    long find(long key) {
+        long low = 0;
+        long high = entries;
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            if (Long.compareUnsigned(key(middle), key) < 0) low = middle + 1;
+            else high = middle;
+        }
+        return low < entries && key(low) == key ? low : -1;
+    }
+
+    private long key(long entry) {
+        return windows[(int) (entry >>> WINDOW_SHIFT)].getLong((int) (entry & (WINDOW_ENTRIES - 1)) * ENTRY_BYTES);
+    }
+
+    private int move(long entry) {
+        return windows[(int) (entry >>> WINDOW_SHIFT)].getShort((int) (entry & (WINDOW_ENTRIES - 1)) * ENTRY_BYTES + 8) & 0xFFFF;
+    }
+
+    private int weight(long entry) {
+        return windows[(int) (entry >>> WINDOW_SHIFT)].getShort((int) (entry & (WINDOW_ENTRIES - 1)) * ENTRY_BYTES + 10) & 0xFFFF;
+    }
+
+    /**
+     * Converts a book move to the matching legal move on the board.
+     */
+    private static int legal(Board board, int bookMove) {
+        int to = (bookMove & 7) + ((bookMove >> 3) & 7) * 8;
+        int from = ((bookMove >> 6) & 7) + ((bookMove >> 9) & 7) * 8;
+        return board.findMove(from, to);
+    }
+
+    /**
+     * Builds a book from games in coordinate notation, the format read by the headless mode:
+     * moves such as "e2e4" separated by whitespace and games separated by the word "new".
+     * <p>
+     * Every move played in the first {@code plies} plies of a game becomes an entry, weighted by
+     * how often it was played from that position. Weights are scaled to fit in 16 bits.
+     *
+     * @param games  the file of games
+     * @param output the book file to write
+     * @param plies  the number of plies of each game to include
+     * @return the number of entries written
+     * @throws IOException if the games cannot be read or the book written
+     */
+    static long build(Path games, Path output, int plies) throws IOException {
+        // how often each book move was played, by position key
+        Map<Long, Map<Integer, Integer>> counts = new HashMap<>();
+        Board board = new Board();
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(Files.newInputStream(games), StandardCharsets.US_ASCII), 1 << 16)) {
+            while (true) {
+                int token = ChessCLI.readMove(in);
+                if (token == ChessCLI.END_OF_INPUT) break;
+                if (token == ChessCLI.NEW_GAME) {
+                    board.setBoard();
+                    continue;
+                }
+                if (token == ChessCLI.BAD_INPUT || board.ply >= plies) continue;
+                int move = board.findMove(Move.from(token), Move.to(token));
+                if (move == 0) continue;
+                int from = Move.from(move);
+                int to = Move.to(move);
+                int bookMove = (to & 7) | (to >> 3) << 3 | (from & 7) << 6 | (from >> 3) << 9;
+                counts.computeIfAbsent(board.hash, key -> new HashMap<>()).merge(bookMove, 1, Integer::sum);
+                board.makeMove(move);
+            }
+        }
+
+        long[] keys = new long[counts.size()];
+        int k = 0;
+        for (long key : counts.keySet()) keys[k++] = key;
+        // keys are sorted as unsigned numbers, as Polyglot does
+        for (int i = 0; i < keys.length; i++) keys[i] ^= Long.MIN_VALUE;
+        Arrays.sort(keys);
+        for (int i = 0; i < keys.length; i++) keys[i] ^= Long.MIN_VALUE;
+
+        int max = 1;
+        for (Map<Integer, Integer> moves : counts.values()) {
+            for (int count : moves.values()) max = Math.max(max, count);
+        }
+
+        long written = 0;
+        try (OutputStream file = Files.newOutputStream(output);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+            for (long key : keys) {
+                for (Map.Entry<Integer, Integer> entry : counts.get(key).entrySet()) {
+                    out.writeLong(key);
+                    out.writeShort(entry.getKey());
+                    out.writeShort(Math.max(1, (int) ((long) entry.getValue() * 0xFFFF / max)));
+                    out.writeInt(0);
+                    written++;
+                }
+            }
+        }
+        return written;
+    }
+}
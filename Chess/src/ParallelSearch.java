@@ -0,0 +1,169 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Multi-threaded search using the Lazy SMP scheme on a {@link ForkJoinPool}.
+ * <p>
+ * Every worker runs its own {@link Engine} on its own copy of the board, so killer moves,
+ * history scores and move buffers are never shared. The only shared state is one
+ * {@link TranspositionTable}, which is lock free. Workers speed each other up by filling the
+ * table with results the others can reuse. Helper workers start their iterations at
+ * alternating depths so they drift apart and explore different parts of the tree.
+ * <p>
+ * The first worker is the main one: its time budget and result decide the move, and the
+ * helpers are stopped as soon as it finishes.
+ */
+public class ParallelSearch {
+
+    private final ForkJoinPool pool;
+    private final Engine[] engines;
+    private final TranspositionTable table;
+
+    /**
+     * Creates a parallel search with a fixed number of worker threads.
+     *
+     * @param threads the number of workers, at least 1
+     * @param table   the transposition table shared by all workers
+     */
+    ParallelSearch(int threads, TranspositionTable table) {
+        pool = new ForkJoinPool(threads);
+        this.table = table;
+        engines = new Engine[threads];
+        for (int i = 0; i < threads; i++) {
+            engines[i] = new Engine(table);
+        }
+    }
+
+    /**
+     * Searches the position on {@code board} with every worker.
+     *
+     * @param board    the position to search, not modified
+     * @param maxDepth the deepest iteration to run
+     * @param millis   the time budget in milliseconds, 0 for no limit
+     * @return the best move of the main worker, or 0 if the side to move has no moves
+     * @see #stop()
+     */
+    public int search(Board board, int maxDepth, long millis) {
+        // one generation per root search, entries written by any worker in it are current
+        table.newSearch();
+        ForkJoinTask<?>[] helpers = new ForkJoinTask<?>[engines.length - 1];
+        for (int i = 1; i < engines.length; i++) {
+            Engine helper = engines[i];
+            Board copy = new Board(board);
+            int firstDepth = 1 + (i & 1);
+            helper.resetStop();
+            helpers[i - 1] = pool.submit(() -> helper.search(copy, firstDepth, maxDepth, 0, true));
+        }
+
+        Board copy = new Board(board);
+        int move = pool.submit(() -> engines[0].search(copy, 1, maxDepth, millis, false)).join();
+
+        for (int i = 1; i < engines.length; i++) {
+            engines[i].stop();
+        }
+        for (ForkJoinTask<?> helper : helpers) {
+            helper.join();
+        }
+        return move;
+    }
+
+    /**
+     * Asks all workers to stop, safe to call from any thread. The request also applies to a search
+     * that has not started yet, so call {@link #resetStop()} before searching again.
+     */
+    void stop() {
+        for (Engine engine : engines) {
+            engine.stop();
+        }
+    }
+
+    /**
+     * Clears an earlier {@link #stop()} before starting a new search from another thread.
+     */
+    void resetStop() {
+        engines[0].resetStop();
+    }
+
+    /**
+     * Forgets earlier games on every worker: the shared transposition table and each worker's
+     * killer moves and history scores. Must not be called while a search is running.
+     */
+    void newGame() {
+        for (Engine engine : engines) {
+            engine.newGame();
+        }
+    }
+
+    /**
+     * Sets the endgame tablebases probed by every worker, or {@code null} for none.
+     *
+     * @param tablebase the tablebases
+     */
+    void setTablebase(Tablebase tablebase) {
+        for (Engine engine : engines) {
+            engine.setTablebase(tablebase);
+        }
+    }
+
+    /**
+     * @return the main worker, which holds the score and depth of the last search
+     */
+    Engine main() {
+        return engines[0];
+    }
+
+    /**
+     * @return the positions visited by all workers in the last search
+     */
+    long nodes() {
+        long nodes = 0;
+        for (Engine engine : engines) {
+            nodes += engine.nodes();
+        }
+        return nodes;
+    }
+
+    /**
+     * Stops the worker threads, the search cannot be used afterwards.
+     */
+    void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Measures how the search scales with threads: searches the start position to a fixed depth
+     * with 1, 2, 4 ... up to {@code maxThreads} workers and prints the time to depth, the total
+     * nodes per second and both speedups relative to one thread. The table is cleared between runs.
+     * Speedups above one need at least as many free cores as workers.
+     *
+     * @param depth      the depth to search to
+     * @param maxThreads the largest number of workers to try
+     * @param megabytes  the size of the shared transposition table
+     */
+    static void benchmark(int depth, int maxThreads, int megabytes) {
+        TranspositionTable table = new TranspositionTable(megabytes, TranspositionTable.Replacement.DEPTH_PREFERRED);
+        long baseTime = 0;
+        long baseNps = 0;
+
+        // warm up the JIT so the single thread run is not penalised
+        new Engine(table).search(new Board(), depth, 0);
+
+        for (int threads = 1; ; threads = Math.min(threads * 2, maxThreads)) {
+            table.clear();
+            ParallelSearch search = new ParallelSearch(threads, table);
+            long start = System.nanoTime();
+            int move = search.search(new Board(), depth, 0);
+            long elapsed = Math.max(1, System.nanoTime() - start);
+            long nps = search.nodes() * 1_000_000_000L / elapsed;
+            search.shutdown();
+            if (threads == 1) {
+                baseTime = elapsed;
+                baseNps = nps;
+            }
+            System.out.printf("threads %d: depth %d in %d ms, move %s, nodes %d, nps %d, time speedup %.2f, nps speedup %.2f%n",
+                    threads, depth, elapsed / 1_000_000, Move.toString(move), search.nodes(), nps,
+                    (double) baseTime / elapsed, (double) nps / baseNps);
+            if (threads == maxThreads) break;
+        }
+    }
+}
@@ -2,32 +2,37 @@
  * Represents a Pawn piece in a chess game, which is a subclass of {@code Piece}.
  * <p>
  * A pawn has special movement rules in chess, including the ability to move two
- * spaces forward on its first move. To track this, the {@code firstMove} flag
- * is added. This flag is used to determine whether the pawn is eligible to make
- * a two-space move.
+ * spaces forward on its first move. Pawns are shared between boards, so whether
+ * a pawn has moved is tracked by the {@code Board} and passed to
+ * {@link #validMove(char, int, char, int, boolean)}.
  * <p>
  * The {@code Board} class manages the state of the game, including determining
- * whether a move is ultimately valid. Even if a move passes this local
- * {@code validMove} method, the {@code firstMove} flag is not toggled locally.
+ * whether a move is ultimately valid.
  */
 public class Pawn extends Piece{
 
-    /**
-     * Tracks whether the pawn has made its first move.
-     * <p>
-     * If {@code true}, the pawn can move two spaces forward; otherwise, it
-     * can only move one space forward.
-     */
-    boolean firstMove;
-
     /**
      * Constructs a {@code Pawn} object with a specified color.
      *
      * @param white {@code true} if the pawn is white, {@code false} if black
      */
     Pawn(boolean white){
-        super(true, white);
-        firstMove = true;
+        super(true, white, Bitboards.PAWN);
+    }
+
+    /**
+     * Determines if the pawn's requested movement is valid according to chess rules, treating a
+     * pawn on its starting row as not having moved yet.
+     *
+     * @param col     the starting column (a-h)
+     * @param row     the starting row (1-8)
+     * @param colDest the requested destination column (a-h)
+     * @param rowDest the requested destination row (1-8)
+     * @return {@code true} if the move is valid, {@code false} otherwise
+     */
+    @Override
+    boolean validMove(char col, int row, char colDest, int rowDest) {
+        return validMove(col, row, colDest, rowDest, row == (white ? 2 : 7));
     }
 
     /**
@@ -40,17 +45,17 @@ public class Pawn extends Piece{
      * @param row     the starting row (1-8)
      * @param colDest the requested destination column (a-h)
      * @param rowDest the requested destination row (1-8)
+     * @param firstMove {@code true} if the pawn has not moved yet
      * @return {@code true} if the move is valid, {@code false} otherwise
      */
-    @Override
-    boolean validMove(char col, int row, char colDest, int rowDest) {
+    boolean validMove(char col, int row, char colDest, int rowDest, boolean firstMove) {
 
         int vert = rowDest - row;
         int horiz = colDest - col;
         // Rule out invalid moves with excessive vertical or horizontal movement
         if (Math.abs(vert) > 2 || Math.abs(horiz) > 1) return false;
 
-        if(this.firstMove){
+        if(firstMove){
             // Special first-move behavior: two-space move allowed
             if(this.white){
                 // moves up
@@ -76,17 +81,6 @@ public class Pawn extends Piece{
         return false;
     }
 
-    /**
-     * Marks the pawn as having made its first move by setting the {@code firstMove} flag to {@code false}.
-     * <p>
-     * This method is called when the pawn completes its first move, preventing it from moving two spaces
-     * in subsequent turns.
-     */
-    public void removeFirstMove(){
-        this.firstMove = false;
-    }
-
-
     /**
      * Returns a string representation of the pawn.
      * <p>
@@ -97,9 +91,6 @@ public class Pawn extends Piece{
      */
     @Override
     public String toString() {
-        String colour;
-        if (this.white) colour = "W";
-        else colour = "B";
-        return colour + "P";
+        return white ? "WP" : "BP";
     }
 }
@@ -0,0 +1,395 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Headless batch validator replaying PGN archives against the rules of {@code Board}.
+ * <p>
+ * The input is memory mapped in windows of up to 1 GB, so files far larger than the heap can
+ * be read without copying. The reading thread only finds where games start (the first tag
+ * pair after the movetext of the game before, whichever tag it is) and hands batches of games
+ * to a pool of worker threads. Each worker keeps its own board and move buffer and parses the
+ * SAN moves straight out of the mapped bytes, so replaying a move allocates nothing.
+ * <p>
+ * One result line per game is written in input order: the game number, its status and the
+ * number of plies replayed, followed by the offending token when a move was rejected. The
+ * totals and the games/sec and moves/sec throughput are printed at the end.
+ */
+public class PgnValidator {
+
+    // game status codes, indexing STATUS
+    static final int OK = 0;
+    static final int ILLEGAL = 1;
+    static final int AMBIGUOUS = 2;
+    static final int UNSUPPORTED = 3;
+    static final int SYNTAX = 4;
+
+    private static final String[] STATUS = {"ok", "illegal move", "ambiguous move", "unsupported move", "syntax error"};
+
+    // largest window of the file mapped at once, games never straddle two windows
+    private static final long WINDOW = 1L << 30;
+
+    private static final int GAMES_PER_TASK = 64;
+
+    // the game termination markers of movetext, and the start of castling written with zeros
+    private static final byte[] WHITE_WINS = "1-0".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] BLACK_WINS = "0-1".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] DRAW = "1/2-1/2".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CASTLING = "0-0".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Per thread replay state, reused for every game the thread validates.
+     */
+    private static final class Worker {
+        final Board board = new Board();
+        final int[] moves = new int[Board.MAX_MOVES];
+        int plies;
+        int errorStart;
+        int errorEnd;
+    }
+
+    /**
+     * Results of one batch of games, written out by the reading thread in submission order.
+     */
+    private static final class Batch {
+        final StringBuilder lines = new StringBuilder();
+        long games;
+        long valid;
+        long moves;
+    }
+
+    private final ThreadLocal<Worker> workers = ThreadLocal.withInitial(Worker::new);
+
+    /**
+     * Validates every game of a PGN file.
+     *
+     * @param input   the PGN file
+     * @param output  the file receiving one result line per game, or {@code -} for standard out
+     * @param threads the number of worker threads
+     * @throws IOException if the input cannot be read or the output written
+     */
+    static void run(Path input, String output, int threads) throws IOException {
+        new PgnValidator().validate(input, output, threads);
+    }
+
+    private void validate(Path input, String output, int threads) throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        ArrayDeque<Future<Batch>> pending = new ArrayDeque<>();
+        Batch total = new Batch();
+        long start = System.nanoTime();
+
+        try (FileChannel channel = FileChannel.open(input, StandardOpenOption.READ);
+             Writer out = output.equals("-")
+                     ? new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.US_ASCII), 1 << 16)
+                     : Files.newBufferedWriter(Path.of(output), StandardCharsets.US_ASCII)) {
+
+            long size = channel.size();
+            long position = 0;
+            long gameNumber = 1;
+            while (position < size) {
+                long length = Math.min(WINDOW, size - position);
+                boolean last = position + length == size;
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+
+                // every window starts with a game, anything before the first tag pair of the file is
+                // read as its movetext. Games after the last game start of a window may be cut off,
+                // they are read with the next window
+                int limit = (int) length;
+                int first = 0;
+                if (!last) {
+                    limit = lastGameStart(window, limit);
+                    if (limit <= first) throw new IOException("game at offset " + position + " is larger than the mapping window");
+                }
+
+                int[] bounds = new int[GAMES_PER_TASK + 1];
+                int count = 0;
+                int gameStart = first;
+                while (gameStart < limit) {
+                    bounds[count++] = gameStart;
+                    gameStart = nextGameStart(window, gameStart + 1, limit);
+                    if (count == GAMES_PER_TASK || gameStart >= limit) {
+                        bounds[count] = gameStart;
+                        int[] taskBounds = bounds;
+                        int taskCount = count;
+                        long taskFirstGame = gameNumber;
+                        pending.add(pool.submit(() -> validateBatch(window, taskBounds, taskCount, taskFirstGame)));
+                        gameNumber += count;
+                        bounds = new int[GAMES_PER_TASK + 1];
+                        count = 0;
+                    }
+                    while (pending.size() > threads * 4) write(pending.poll(), out, total);
+                }
+                position += last ? length : limit;
+            }
+            while (!pending.isEmpty()) write(pending.poll(), out, total);
+        } finally {
+            pool.shutdown();
+        }
+
+        double seconds = Math.max(1, System.nanoTime() - start) / 1e9;
+        System.err.printf("%d games, %d valid, %d moves in %.2f s: %.0f games/s, %.0f moves/s%n",
+                total.games, total.valid, total.moves, seconds, total.games / seconds, total.moves / seconds);
+    }
+
+    /**
+     * Waits for a batch and appends its results to the output and totals.
+     */
+    private static void write(Future<Batch> future, Writer out, Batch total) throws IOException {
+        Batch batch;
+        try {
+            batch = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while validating", e);
+        } catch (ExecutionException e) {
+            throw new IOException("validation failed", e.getCause());
+        }
+        out.append(batch.lines);
+        total.games += batch.games;
+        total.valid += batch.valid;
+        total.moves += batch.moves;
+    }
+
+    /**
+     * Validates a batch of games on the calling worker thread.
+     */
+    private Batch validateBatch(ByteBuffer buffer, int[] bounds, int count, long firstGame) {
+        Worker worker = workers.get();
+        Batch batch = new Batch();
+        for (int game = 0; game < count; game++) {
+            int status = replay(worker, buffer, bounds[game], bounds[game + 1]);
+            batch.games++;
+            batch.moves += worker.plies;
+            batch.lines.append(firstGame + game).append('\t').append(STATUS[status]).append('\t').append(worker.plies);
+            if (status == OK) {
+                batch.valid++;
+            } else {
+                batch.lines.append('\t');
+                for (int i = worker.errorStart; i < worker.errorEnd; i++) {
+                    batch.lines.append((char) (buffer.get(i) & 0xFF));
+                }
+            }
+            batch.lines.append('\n');
+        }
+        return batch;
+    }
+
+    /**
+     * Replays one game from the start position, stopping at its result or first rejected move.
+     *
+     * @return the status of the game
+     */
+    private static int replay(Worker worker, ByteBuffer buffer, int start, int end) {
+        Board board = worker.board;
+        board.setBoard();
+        worker.plies = 0;
+
+        int i = start;
+        while (i < end) {
+            int c = buffer.get(i);
+            if (c == '[' || c == ';' || c == '%') {
+                // tag pair, line comment or escape line
+                while (i < end && buffer.get(i) != '\n') i++;
+            } else if (c == '{') {
+                while (i < end && buffer.get(i) != '}') i++;
+                i++;
+            } else if (c == '(') {
+                // variations are skipped, they may nest
+                int depth = 0;
+                do {
+                    c = buffer.get(i++);
+                    if (c == '(') depth++;
+                    else if (c == ')') depth--;
+                    else if (c == '{') {
+                        while (i < end && buffer.get(i) != '}') i++;
+                    }
+                } while (depth > 0 && i < end);
+            } else if (c == '*') {
+                return OK;
+            } else if (c == '$' || c >= '0' && c <= '9' && !startsWith(buffer, i, end, CASTLING)) {
+                // move number, NAG or result, castling written with zeros is read as a move below
+                if (c != '$' && (isToken(buffer, i, end, WHITE_WINS) || isToken(buffer, i, end, BLACK_WINS)
+                        || isToken(buffer, i, end, DRAW))) return OK;
+                int tokenStart = i;
+                while (i < end && (Character.isDigit(buffer.get(i)) || buffer.get(i) == '$')) i++;
+                if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '/')) {
+                    worker.errorStart = tokenStart;
+                    while (i < end && buffer.get(i) > ' ') i++;
+                    worker.errorEnd = i;
+                    return SYNTAX;
+                }
+                while (i < end && buffer.get(i) == '.') i++;
+            } else if (c > ' ') {
+                int tokenEnd = i;
+                while (tokenEnd < end && buffer.get(tokenEnd) > ' ' && buffer.get(tokenEnd) != '{'
+                        && buffer.get(tokenEnd) != '(' && buffer.get(tokenEnd) != ';') tokenEnd++;
+                int status = playSan(worker, buffer, i, tokenEnd);
+                if (status != OK) {
+                    worker.errorStart = i;
+                    worker.errorEnd = tokenEnd;
+                    return status;
+                }
+                worker.plies++;
+                i = tokenEnd;
+            } else {
+                i++;
+            }
+        }
+        return OK;
+    }
+
+    /**
+     * @return {@code true} if the bytes from {@code start} begin with {@code text}
+     */
+    private static boolean startsWith(ByteBuffer buffer, int start, int end, byte[] text) {
+        if (end - start < text.length) return false;
+        for (int k = 0; k < text.length; k++) {
+            if (buffer.get(start + k) != text[k]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return {@code true} if the token at {@code start} is exactly {@code text}, ending at whitespace or a comment
+     */
+    private static boolean isToken(ByteBuffer buffer, int start, int end, byte[] text) {
+        if (!startsWith(buffer, start, end, text)) return false;
+        int after = start + text.length;
+        return after == end || buffer.get(after) <= ' ' || buffer.get(after) == '{' || buffer.get(after) == ';';
+    }
+
+    /**
+     * Finds the move a SAN token describes among the generated moves and makes it.
+     *
+     * @return {@link #OK} if exactly one move matched and was made, otherwise the reason it was rejected
+     */
+    private static int playSan(Worker worker, ByteBuffer buffer, int start, int end) {
+        // drop check, mate and annotation suffixes
+        while (end > start && "+#!?".indexOf(buffer.get(end - 1)) >= 0) end--;
+        if (end - start < 2) return SYNTAX;
+
+        int first = buffer.get(start);
+        if (first == 'O' || first == '0') return UNSUPPORTED; // castling is not part of this board's rules
+
+        int type = Bitboards.PAWN;
+        int i = start;
+        switch (first) {
+            case 'K' -> type = Bitboards.KING;
+            case 'Q' -> type = Bitboards.QUEEN;
+            case 'R' -> type = Bitboards.ROOK;
+            case 'B' -> type = Bitboards.BISHOP;
+            case 'N' -> type = Bitboards.HORSE;
+            default -> i--;
+        }
+        i++;
+
+        // promotions are not part of this board's rules either
+        for (int p = i; p < end; p++) {
+            if (buffer.get(p) == '=') return UNSUPPORTED;
+        }
+        if (end - i < 2) return SYNTAX;
+
+        int destFile = buffer.get(end - 2) - 'a';
+        int destRank = buffer.get(end - 1) - '1';
+        if (destFile < 0 || destFile > 7 || destRank < 0 || destRank > 7) {
+            return type == Bitboards.PAWN && "QRBN".indexOf(buffer.get(end - 1)) >= 0 ? UNSUPPORTED : SYNTAX;
+        }
+
+        // disambiguation and capture marks between the piece letter and the destination
+        int fromFile = -1;
+        int fromRank = -1;
+        for (int p = i; p < end - 2; p++) {
+            int c = buffer.get(p);
+            if (c >= 'a' && c <= 'h') fromFile = c - 'a';
+            else if (c >= '1' && c <= '8') fromRank = c - '1';
+            else if (c != 'x' && c != ':' && c != '-') return SYNTAX;
+        }
+
+        Board board = worker.board;
+        int[] moves = worker.moves;
+        int count = board.generateMoves(board.whiteToMove, moves);
+        int to = Bitboards.square(destFile, destRank);
+        int match = 0;
+        int matches = 0;
+        for (int m = 0; m < count; m++) {
+            int move = moves[m];
+            int from = Move.from(move);
+            if (Move.to(move) != to || board.board[from & 7][from >> 3].type != type) continue;
+            if (fromFile >= 0 && (from & 7) != fromFile) continue;
+            if (fromRank >= 0 && (from >> 3) != fromRank) continue;
+            match = move;
+            matches++;
+        }
+        if (matches == 0) return isEnPassant(board, type, fromFile, destFile, destRank) ? UNSUPPORTED : ILLEGAL;
+        if (matches > 1) return AMBIGUOUS;
+        board.makeMove(match);
+        return OK;
+    }
+
+    /**
+     * En passant is not part of this board's rules, so a pawn capture it would allow is reported
+     * as unsupported rather than illegal.
+     *
+     * @return {@code true} if the side to move has a pawn on {@code fromFile} diagonally behind the empty
+     * destination, next to an enemy pawn it could have captured en passant
+     */
+    private static boolean isEnPassant(Board board, int type, int fromFile, int destFile, int destRank) {
+        if (type != Bitboards.PAWN || Math.abs(fromFile - destFile) != 1) return false;
+        boolean white = board.whiteToMove;
+        int fromRank = white ? destRank - 1 : destRank + 1;
+        if (fromRank < 0 || fromRank > 7 || board.board[destFile][destRank].type != Piece.NONE) return false;
+        Piece pawn = board.board[fromFile][fromRank];
+        Piece passed = board.board[destFile][fromRank];
+        return pawn.type == Bitboards.PAWN && pawn.white == white
+                && passed.type == Bitboards.PAWN && passed.white != white;
+    }
+
+    /**
+     * @return the offset of the first game start at or after {@code from}, or {@code limit}
+     */
+    private static int nextGameStart(ByteBuffer buffer, int from, int limit) {
+        for (int i = from; i < limit; i++) {
+            if ((i == 0 || buffer.get(i - 1) == '\n') && isGameStart(buffer, i)) return i;
+        }
+        return limit;
+    }
+
+    /**
+     * @return the offset of the last game start before {@code limit}, or 0
+     */
+    private static int lastGameStart(ByteBuffer buffer, int limit) {
+        for (int i = limit - 1; i > 0; i--) {
+            if (buffer.get(i - 1) == '\n' && isGameStart(buffer, i)) return i;
+        }
+        return 0;
+    }
+
+    /**
+     * A game starts at its first tag pair, the first line starting with {@code [} after the
+     * movetext and result of the game before it, whichever tag that is.
+     *
+     * @param i the offset of the start of a line
+     * @return {@code true} if the line is a tag pair and the last non blank line before it is movetext
+     */
+    private static boolean isGameStart(ByteBuffer buffer, int i) {
+        if (buffer.get(i) != '[') return false;
+        int p = i - 1;
+        while (p >= 0 && buffer.get(p) <= ' ') p--;
+        if (p < 0) return false;
+        while (p > 0 && buffer.get(p - 1) != '\n') p--;
+        return buffer.get(p) != '[';
+    }
+}
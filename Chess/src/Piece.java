@@ -1,16 +1,49 @@
+/**
+ * A chess piece of one type and colour, or the empty square.
+ * <p>
+ * Pieces hold no per game state, so one immutable instance of each type and colour is shared
+ * by every square of every board: see {@link #of(int, boolean)} and {@link #EMPTY}. State that
+ * changes during a game, such as whether a pawn may still advance two squares, is kept by the
+ * {@code Board}.
+ */
 class Piece {
 
-    boolean white;
-    boolean alive;
+    final boolean white;
+    final boolean alive;
+
+    // compact type code, one of the Bitboards piece type constants or NONE for an empty square
+    final byte type;
+
+    static final byte NONE = -1;
+
+    // the empty square
+    static final Piece EMPTY = new Piece();
+
+    // the shared pieces, indexed by Bitboards.index(type, white)
+    private static final Piece[] PIECES = {
+            new Pawn(true), new Pawn(false), new Horse(true), new Horse(false),
+            new Bishop(true), new Bishop(false), new Rook(true), new Rook(false),
+            new Queen(true), new Queen(false), new King(true), new King(false)};
 
     Piece() {
         this.alive = false;
+        this.white = false;
+        this.type = NONE;
     }
 
-    Piece(boolean alive, boolean white){
+    Piece(boolean alive, boolean white, int type){
         this.alive = alive;
         this.white = white;
+        this.type = (byte) type;
+    }
 
+    /**
+     * @param type  the piece type, one of the Bitboards piece type constants
+     * @param white {@code true} for a white piece
+     * @return the shared piece of that type and colour
+     */
+    static Piece of(int type, boolean white) {
+        return PIECES[Bitboards.index(type, white)];
     }
 
     boolean validMove(char col, int row, char colDest, int rowDest) {
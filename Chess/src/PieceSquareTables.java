@@ -0,0 +1,141 @@
+/**
+ * Material and piece-square values for the static evaluation in {@code Board}.
+ * <p>
+ * Every piece on a square is worth its material value plus a bonus or penalty for that square,
+ * once for the middlegame and once for the endgame. The tables below are written from white's
+ * side with row 8 on top, as a board is usually drawn, and are mirrored for black. They are
+ * folded into {@link #MIDGAME} and {@link #ENDGAME}, which hold the signed value of each piece
+ * on each square with white positive, so a move only adds and subtracts a few table entries.
+ * <p>
+ * The two scores are blended by the game phase, which starts at {@link #MAX_PHASE} with all
+ * pieces on the board and drops as minor pieces, rooks and queens are traded.
+ */
+public final class PieceSquareTables {
+
+    // signed value per bitboard index (see Bitboards.index) and square, white positive
+    static final int[][] MIDGAME = new int[12][64];
+    static final int[][] ENDGAME = new int[12][64];
+
+    // phase weight per piece type, pawns and kings do not change the phase
+    static final int[] PHASE = {0, 1, 1, 2, 4, 0};
+
+    // phase of the starting position
+    static final int MAX_PHASE = 24;
+
+    // endgame material values per piece type, the middlegame ones are Board.PIECE_VALUES
+    private static final int[] ENDGAME_VALUES = {120, 290, 320, 530, 950, 0};
+
+    private static final int[] PAWN = {
+            0, 0, 0, 0, 0, 0, 0, 0,
+            50, 50, 50, 50, 50, 50, 50, 50,
+            10, 10, 20, 30, 30, 20, 10, 10,
+            5, 5, 10, 25, 25, 10, 5, 5,
+            0, 0, 0, 20, 20, 0, 0, 0,
+            5, -5, -10, 0, 0, -10, -5, 5,
+            5, 10, 10, -20, -20, 10, 10, 5,
+            0, 0, 0, 0, 0, 0, 0, 0};
+
+    // without promotion a pawn on the last row can no longer move, so it earns nothing extra
+    private static final int[] PAWN_ENDGAME = {
+            0, 0, 0, 0, 0, 0, 0, 0,
+            80, 80, 80, 80, 80, 80, 80, 80,
+            50, 50, 50, 50, 50, 50, 50, 50,
+            30, 30, 30, 30, 30, 30, 30, 30,
+            15, 15, 15, 15, 15, 15, 15, 15,
+            5, 5, 5, 5, 5, 5, 5, 5,
+            0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0};
+
+    private static final int[] HORSE = {
+            -50, -40, -30, -30, -30, -30, -40, -50,
+            -40, -20, 0, 0, 0, 0, -20, -40,
+            -30, 0, 10, 15, 15, 10, 0, -30,
+            -30, 5, 15, 20, 20, 15, 5, -30,
+            -30, 0, 15, 20, 20, 15, 0, -30,
+            -30, 5, 10, 15, 15, 10, 5, -30,
+            -40, -20, 0, 5, 5, 0, -20, -40,
+            -50, -40, -30, -30, -30, -30, -40, -50};
+
+    private static final int[] BISHOP = {
+            -20, -10, -10, -10, -10, -10, -10, -20,
+            -10, 0, 0, 0, 0, 0, 0, -10,
+            -10, 0, 5, 10, 10, 5, 0, -10,
+            -10, 5, 5, 10, 10, 5, 5, -10,
+            -10, 0, 10, 10, 10, 10, 0, -10,
+            -10, 10, 10, 10, 10, 10, 10, -10,
+            -10, 5, 0, 0, 0, 0, 5, -10,
+            -20, -10, -10, -10, -10, -10, -10, -20};
+
+    private static final int[] ROOK = {
+            0, 0, 0, 0, 0, 0, 0, 0,
+            5, 10, 10, 10, 10, 10, 10, 5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            0, 0, 0, 5, 5, 0, 0, 0};
+
+    private static final int[] QUEEN = {
+            -20, -10, -10, -5, -5, -10, -10, -20,
+            -10, 0, 0, 0, 0, 0, 0, -10,
+            -10, 0, 5, 5, 5, 5, 0, -10,
+            -5, 0, 5, 5, 5, 5, 0, -5,
+            0, 0, 5, 5, 5, 5, 0, -5,
+            -10, 5, 5, 5, 5, 5, 0, -10,
+            -10, 0, 5, 0, 0, 0, 0, -10,
+            -20, -10, -10, -5, -5, -10, -10, -20};
+
+    // the king hides behind its pawns while there are pieces to attack it
+    private static final int[] KING = {
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -20, -30, -30, -40, -40, -30, -30, -20,
+            -10, -20, -20, -20, -20, -20, -20, -10,
+            20, 20, 0, 0, 0, 0, 20, 20,
+            20, 30, 10, 0, 0, 10, 30, 20};
+
+    // and heads for the centre once they are gone
+    private static final int[] KING_ENDGAME = {
+            -50, -40, -30, -20, -20, -30, -40, -50,
+            -30, -20, -10, 0, 0, -10, -20, -30,
+            -30, -10, 20, 30, 30, 20, -10, -30,
+            -30, -10, 30, 40, 40, 30, -10, -30,
+            -30, -10, 30, 40, 40, 30, -10, -30,
+            -30, -10, 20, 30, 30, 20, -10, -30,
+            -30, -30, 0, 0, 0, 0, -30, -30,
+            -50, -30, -30, -30, -30, -30, -30, -50};
+
+    static {
+        int[][] midgame = {PAWN, HORSE, BISHOP, ROOK, QUEEN, KING};
+        int[][] endgame = {PAWN_ENDGAME, HORSE, BISHOP, ROOK, QUEEN, KING_ENDGAME};
+        for (int type = 0; type < Bitboards.TYPES; type++) {
+            for (int square = 0; square < 64; square++) {
+                // the tables start at a8, so white reads them with the row flipped
+                int white = square ^ 56;
+                MIDGAME[Bitboards.index(type, true)][square] = Board.PIECE_VALUES[type] + midgame[type][white];
+                ENDGAME[Bitboards.index(type, true)][square] = ENDGAME_VALUES[type] + endgame[type][white];
+                MIDGAME[Bitboards.index(type, false)][square] = -Board.PIECE_VALUES[type] - midgame[type][square];
+                ENDGAME[Bitboards.index(type, false)][square] = -ENDGAME_VALUES[type] - endgame[type][square];
+            }
+        }
+    }
+
+    private PieceSquareTables() {
+    }
+
+    /**
+     * Blends a middlegame and an endgame score by the game phase.
+     *
+     * @param midgame the middlegame score
+     * @param endgame the endgame score
+     * @param phase   the phase, {@link #MAX_PHASE} for a full board down to 0 for kings and pawns
+     * @return the tapered score
+     */
+    static int taper(int midgame, int endgame, int phase) {
+        int weight = Math.min(phase, MAX_PHASE);
+        return (midgame * weight + endgame * (MAX_PHASE - weight)) / MAX_PHASE;
+    }
+}
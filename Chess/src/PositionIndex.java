@@ -0,0 +1,520 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Index of every position reached in the games of a {@link GameJournal}, memory mapped and
+ * searched in place like the {@link OpeningBook}.
+ * <p>
+ * Each position of each game is one 16 byte big-endian entry: the {@link Zobrist} hash of the
+ * board, the number of the game in the journal (counting from 0), the move played next (0 at
+ * the end of the game) and the game's result in the top 4 bits over the ply in the low 12. The
+ * entries are sorted by unsigned hash and then by game, so a position's entries are adjacent
+ * and list its games in journal order. The file starts with a table of the first entry of
+ * each of the 65536 buckets of hashes sharing their top 16 bits, so a lookup is a binary
+ * search within one bucket, a few pages of the mapped file. Like the book, positions are
+ * identified by their hash alone.
+ * <p>
+ * Building reads the journal on one thread and hands chunks of about {@link #RUN_ENTRIES}
+ * positions to a pool of workers. Each worker replays its games, checking every move against
+ * the rules, sorts the entries of its chunk with a radix sort and writes them to a run file
+ * next to the index. The runs are then merged into the index in one pass, so memory use is
+ * bounded by the chunks in flight and the index can be far larger than the heap.
+ */
+class PositionIndex {
+
+    // bytes per entry: hash, game, move and result over ply
+    static final int ENTRY_BYTES = 16;
+
+    // entries of each sorted run, 16 MB plus as much again while sorting
+    static final int RUN_ENTRIES = 1 << 20;
+
+    // hashes are bucketed by their top bits, the table holds the first entry of every bucket and the end
+    private static final int BUCKET_BITS = 16;
+    private static final int TABLE_BYTES = ((1 << BUCKET_BITS) + 1) * 8;
+
+    // entries per mapped window, 1 GB of entries
+    private static final int WINDOW_SHIFT = 26;
+    private static final long WINDOW_ENTRIES = 1L << WINDOW_SHIFT;
+
+    // plies above this are stored as this
+    private static final int MAX_PLY = 0xFFF;
+
+    /**
+     * What the games of the index played from one position, filled in by {@link #lookup}. A
+     * result is reused across lookups, so looking positions up allocates nothing.
+     */
+    static final class Stats {
+        // the first entry of the position and the number of its entries, see game(long) and ply(long)
+        long first;
+        int entries;
+        // distinct games reaching the position and how they ended
+        int games;
+        int whiteWins;
+        int blackWins;
+        int draws;
+        // the moves played from the position, with how often and how the games went on to end
+        int moveCount;
+        final int[] moves = new int[Board.MAX_MOVES];
+        final int[] played = new int[Board.MAX_MOVES];
+        final int[] moveWhiteWins = new int[Board.MAX_MOVES];
+        final int[] moveBlackWins = new int[Board.MAX_MOVES];
+        final int[] moveDraws = new int[Board.MAX_MOVES];
+    }
+
+    private final ByteBuffer table;
+    private final ByteBuffer[] windows;
+    private final long entries;
+
+    /**
+     * Maps an index file. The file stays mapped until the index is garbage collected.
+     *
+     * @param path the index file
+     * @throws IOException if the file cannot be read or is not an index
+     */
+    PositionIndex(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < TABLE_BYTES || (size - TABLE_BYTES) % ENTRY_BYTES != 0) {
+                throw new IOException("not a position index: " + path);
+            }
+            entries = (size - TABLE_BYTES) / ENTRY_BYTES;
+            table = channel.map(FileChannel.MapMode.READ_ONLY, 0, TABLE_BYTES);
+            if (table.getLong(TABLE_BYTES - 8) != entries) throw new IOException("not a position index: " + path);
+            windows = new ByteBuffer[(int) ((entries + WINDOW_ENTRIES - 1) / WINDOW_ENTRIES)];
+            for (int i = 0; i < windows.length; i++) {
+                long start = i * WINDOW_ENTRIES * ENTRY_BYTES;
+                windows[i] = channel.map(FileChannel.MapMode.READ_ONLY, TABLE_BYTES + start,
+                        Math.min(WINDOW_ENTRIES * ENTRY_BYTES, size - TABLE_BYTES - start));
+            }
+        }
+    }
+
+    /**
+     * @return the number of entries in the index, one per position of every game
+     */
+    long size() {
+        return entries;
+    }
+
+    /**
+     * Looks a position up and gathers the statistics of the games reaching it. The index is only
+     * read, so any number of threads can look positions up at once, each with its own result.
+     *
+     * @param hash  the {@link Zobrist} hash of the position
+     * @param stats the result to fill in, cleared first
+     * @return {@code true} if any game reached the position
+     */
+    boolean lookup(long hash, Stats stats) {
+        stats.entries = 0;
+        stats.games = 0;
+        stats.whiteWins = 0;
+        stats.blackWins = 0;
+        stats.draws = 0;
+        stats.moveCount = 0;
+        long first = find(hash);
+        stats.first = first;
+        if (first < 0) return false;
+
+        int lastGame = -1;
+        long entry = first;
+        for (; entry < entries && key(entry) == hash; entry++) {
+            int game = game(entry);
+            int result = info(entry) >>> 12;
+            if (game != lastGame) {
+                stats.games++;
+                if (result == GameJournal.WHITE_WINS) stats.whiteWins++;
+                else if (result == GameJournal.BLACK_WINS) stats.blackWins++;
+                else if (result == GameJournal.DRAW) stats.draws++;
+                lastGame = game;
+            }
+            int move = move(entry);
+            if (move == 0) continue;
+            int slot = 0;
+            while (slot < stats.moveCount && stats.moves[slot] != move) slot++;
+            if (slot == stats.moveCount) {
+                if (slot == Board.MAX_MOVES) continue;
+                stats.moves[slot] = move;
+                stats.played[slot] = 0;
+                stats.moveWhiteWins[slot] = 0;
+                stats.moveBlackWins[slot] = 0;
+                stats.moveDraws[slot] = 0;
+                stats.moveCount++;
+            }
+            stats.played[slot]++;
+            if (result == GameJournal.WHITE_WINS) stats.moveWhiteWins[slot]++;
+            else if (result == GameJournal.BLACK_WINS) stats.moveBlackWins[slot]++;
+            else if (result == GameJournal.DRAW) stats.moveDraws[slot]++;
+        }
+        stats.entries = (int) Math.min(Integer.MAX_VALUE, entry - first);
+        return true;
+    }
+
+    /**
+     * Finds the first entry with the given hash by binary search within its bucket.
+     *
+     * @param hash the position hash
+     * @return the index of the first entry with the hash, or -1 if there is none
+     */
+    long find(long hash) {
+        int bucket = (int) (hash >>> (64 - BUCKET_BITS));
+        long low = table.getLong(bucket * 8);
+        long high = table.getLong(bucket * 8 + 8);
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            if (Long.compareUnsigned(key(middle), hash) < 0) low = middle + 1;
+            else high = middle;
+        }
+        return low < entries && key(low) == hash ? low : -1;
+    }
+
+    /**
+     * @param entry an entry, such as one of the {@link Stats#entries} from {@link Stats#first}
+     * @return the number of the game the entry belongs to, counting the games of the journal from 0
+     */
+    int game(long entry) {
+        return window(entry).getInt(offset(entry) + 8);
+    }
+
+    /**
+     * @param entry an entry
+     * @return the ply at which the game reached the position, at most 4095
+     */
+    int ply(long entry) {
+        return info(entry) & MAX_PLY;
+    }
+
+    private long key(long entry) {
+        return window(entry).getLong(offset(entry));
+    }
+
+    private int move(long entry) {
+        return window(entry).getShort(offset(entry) + 12) & 0xFFFF;
+    }
+
+    private int info(long entry) {
+        return window(entry).getShort(offset(entry) + 14) & 0xFFFF;
+    }
+
+    private ByteBuffer window(long entry) {
+        return windows[(int) (entry >>> WINDOW_SHIFT)];
+    }
+
+    private static int offset(long entry) {
+        return (int) (entry & (WINDOW_ENTRIES - 1)) * ENTRY_BYTES;
+    }
+
+    /**
+     * Games read from the journal for one run, as consecutive move words with the bounds and
+     * result of each game.
+     */
+    private static final class Chunk {
+        final int firstGame;
+        int[] moves = new int[1024];
+        int[] starts = new int[65];
+        int[] results = new int[64];
+        int games;
+        int moveCount;
+
+        Chunk(int firstGame) {
+            this.firstGame = firstGame;
+        }
+
+        void newGame() {
+            if (games == results.length) {
+                starts = Arrays.copyOf(starts, results.length * 2 + 1);
+                results = Arrays.copyOf(results, results.length * 2);
+            }
+            starts[games] = moveCount;
+            results[games] = GameJournal.NO_RESULT;
+            games++;
+            starts[games] = moveCount;
+        }
+
+        void add(int move) {
+            if (moveCount == moves.length) moves = Arrays.copyOf(moves, moveCount * 2);
+            moves[moveCount++] = move;
+            starts[games] = moveCount;
+        }
+
+        // one entry per move and one for the final position of every game
+        int positions() {
+            return moveCount + games;
+        }
+    }
+
+    /**
+     * What {@link #build} did, for the caller to report.
+     */
+    static final class Summary {
+        int games;
+        long positions;
+        int runs;
+        long sortNanos;
+        long mergeNanos;
+        // offset of the first damaged record of the journal, or -1 if it was read to the end
+        long damagedAt = -1;
+
+        @Override
+        public String toString() {
+            double seconds = Math.max(1, sortNanos + mergeNanos) / 1e9;
+            return String.format("%d games, %d positions, %d runs, sorted in %.2f s, merged in %.2f s: %.0f positions/s",
+                    games, positions, runs, sortNanos / 1e9, mergeNanos / 1e9, positions / seconds);
+        }
+    }
+
+    /**
+     * Builds an index from every game of a journal. Nothing is printed, the counts and timings
+     * are returned.
+     *
+     * @param journal the game journal, see {@link GameJournal}
+     * @param output  the index file to write, runs are written next to it and deleted
+     * @param threads the number of worker threads replaying and sorting
+     * @return the games and positions indexed and the time taken
+     * @throws IOException if the journal cannot be read or the index written
+     */
+    static Summary build(Path journal, Path output, int threads) throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        ArrayDeque<Future<Path>> pending = new ArrayDeque<>();
+        List<Path> runs = new ArrayList<>();
+        Summary summary = new Summary();
+        long start = System.nanoTime();
+        try {
+            int game = 0;
+            boolean inGame = false;
+            Chunk chunk = new Chunk(0);
+            try (GameJournal.Reader reader = new GameJournal.Reader(journal)) {
+                int record;
+                while ((record = reader.next()) != GameJournal.Reader.END) {
+                    if (record == GameJournal.Reader.NEW_GAME) {
+                        if (chunk.positions() >= RUN_ENTRIES) {
+                            pending.add(submit(pool, chunk, output, runs.size() + pending.size()));
+                            while (pending.size() > threads) runs.add(await(pending.poll()));
+                            chunk = new Chunk(game);
+                        }
+                        chunk.newGame();
+                        game++;
+                        inGame = true;
+                    } else if (record == GameJournal.Reader.MOVE && inGame) {
+                        chunk.add(reader.move());
+                    } else if (record == GameJournal.Reader.END_GAME && inGame) {
+                        chunk.results[chunk.games - 1] = reader.result();
+                        inGame = false;
+                    }
+                }
+                if (reader.corrupt()) summary.damagedAt = reader.offset();
+            }
+            if (chunk.games > 0) pending.add(submit(pool, chunk, output, runs.size() + pending.size()));
+            while (!pending.isEmpty()) runs.add(await(pending.poll()));
+            long sorted = System.nanoTime();
+
+            summary.positions = merge(runs, output);
+            summary.games = game;
+            summary.runs = runs.size();
+            summary.sortNanos = sorted - start;
+            summary.mergeNanos = System.nanoTime() - sorted;
+        } finally {
+            pool.shutdownNow();
+            for (Future<Path> future : pending) {
+                if (future.isDone() && !future.isCancelled()) {
+                    try {
+                        runs.add(future.get());
+                    } catch (InterruptedException | ExecutionException e) {
+                        // the run was not written
+                    }
+                }
+            }
+            for (Path run : runs) Files.deleteIfExists(run);
+        }
+        return summary;
+    }
+
+    private static Future<Path> submit(ExecutorService pool, Chunk chunk, Path output, int number) {
+        Path run = output.resolveSibling(output.getFileName() + ".run" + number);
+        return pool.submit(() -> writeRun(chunk, run));
+    }
+
+    /**
+     * Waits for a run to be written.
+     */
+    private static Path await(Future<Path> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while indexing", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException cause) throw cause;
+            throw new IOException("indexing failed", e.getCause());
+        }
+    }
+
+    /**
+     * Replays the games of a chunk on the calling worker thread, sorts their entries and writes them to a run.
+     */
+    private static Path writeRun(Chunk chunk, Path run) throws IOException {
+        long[] keys = new long[chunk.positions()];
+        long[] values = new long[keys.length];
+        int count = 0;
+        Board board = new Board();
+        for (int game = 0; game < chunk.games; game++) {
+            board.setBoard();
+            long result = (long) chunk.results[game] << 12;
+            long number = (long) (chunk.firstGame + game) << 32;
+            for (int i = chunk.starts[game]; i < chunk.starts[game + 1]; i++) {
+                int word = chunk.moves[i];
+                // a game stops at a move the rules reject, as when the journal is recovered
+                int move = board.findMove(Move.from(word), Move.to(word));
+                if (move == 0 || move != word) break;
+                keys[count] = board.hash;
+                values[count++] = number | (long) move << 16 | result | Math.min(board.ply, MAX_PLY);
+                board.makeMove(move);
+            }
+            keys[count] = board.hash;
+            values[count++] = number | result | Math.min(board.ply, MAX_PLY);
+        }
+        sort(keys, values, count);
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), 1 << 16))) {
+            for (int i = 0; i < count; i++) {
+                out.writeLong(keys[i]);
+                out.writeLong(values[i]);
+            }
+        }
+        return run;
+    }
+
+    /**
+     * Sorts entries by unsigned key with a least significant digit radix sort, 16 bits per pass.
+     * The sort is stable, so entries added in game order stay in game order within a key.
+     */
+    static void sort(long[] keys, long[] values, int count) {
+        long[] keyBuffer = new long[count];
+        long[] valueBuffer = new long[count];
+        int[] offsets = new int[1 << 16];
+        // four passes, so the sorted entries end up back in the arrays passed in
+        for (int shift = 0; shift < 64; shift += 16) {
+            Arrays.fill(offsets, 0);
+            for (int i = 0; i < count; i++) offsets[(int) (keys[i] >>> shift) & 0xFFFF]++;
+            int sum = 0;
+            for (int digit = 0; digit < offsets.length; digit++) {
+                int digitCount = offsets[digit];
+                offsets[digit] = sum;
+                sum += digitCount;
+            }
+            for (int i = 0; i < count; i++) {
+                int at = offsets[(int) (keys[i] >>> shift) & 0xFFFF]++;
+                keyBuffer[at] = keys[i];
+                valueBuffer[at] = values[i];
+            }
+            long[] swap = keys;
+            keys = keyBuffer;
+            keyBuffer = swap;
+            swap = values;
+            values = valueBuffer;
+            valueBuffer = swap;
+        }
+    }
+
+    /**
+     * Sequential reader of one sorted run during the merge.
+     */
+    private static final class Run implements Closeable {
+        final DataInputStream in;
+        long key;
+        long value;
+
+        Run(Path path) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16));
+        }
+
+        /**
+         * @return {@code false} at the end of the run
+         */
+        boolean next() throws IOException {
+            try {
+                key = in.readLong();
+            } catch (EOFException e) {
+                return false;
+            }
+            value = in.readLong();
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * Merges sorted runs into the index file and writes its bucket table.
+     * Runs hold consecutive games in order, so ties on the key are broken by the game.
+     *
+     * @return the number of entries written
+     */
+    private static long merge(List<Path> runs, Path output) throws IOException {
+        PriorityQueue<Run> heads = new PriorityQueue<>(Math.max(1, runs.size()), (a, b) -> {
+            int order = Long.compareUnsigned(a.key, b.key);
+            return order != 0 ? order : Long.compare(a.value, b.value);
+        });
+        long[] bucketStarts = new long[(1 << BUCKET_BITS) + 1];
+        long written = 0;
+        try (FileChannel channel = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (Path path : runs) {
+                Run run = new Run(path);
+                if (run.next()) heads.add(run);
+                else run.close();
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+            channel.position(TABLE_BYTES);
+            while (!heads.isEmpty()) {
+                Run run = heads.poll();
+                if (!buffer.hasRemaining()) {
+                    buffer.flip();
+                    while (buffer.hasRemaining()) channel.write(buffer);
+                    buffer.clear();
+                }
+                buffer.putLong(run.key).putLong(run.value);
+                bucketStarts[(int) (run.key >>> (64 - BUCKET_BITS)) + 1]++;
+                written++;
+                if (run.next()) heads.add(run);
+                else run.close();
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) channel.write(buffer);
+
+            // bucket sizes to the first entry of each bucket, the last slot holding the entry count
+            ByteBuffer table = ByteBuffer.allocate(TABLE_BYTES);
+            for (int bucket = 0; bucket < bucketStarts.length; bucket++) {
+                if (bucket > 0) bucketStarts[bucket] += bucketStarts[bucket - 1];
+                table.putLong(bucketStarts[bucket]);
+            }
+            table.flip();
+            long position = 0;
+            while (table.hasRemaining()) position += channel.write(table, position);
+        } finally {
+            for (Run run : heads) run.close();
+        }
+        return written;
+    }
+}
@@ -14,7 +14,7 @@ public class Queen extends Piece{
      * @param white {@code true} if the queen is white, {@code false} if black
      */
     Queen(boolean white){
-        super(true, white);
+        super(true, white, Bitboards.QUEEN);
     }
 
     /**
@@ -50,9 +50,6 @@ public class Queen extends Piece{
      */
     @Override
     public String toString() {
-        String colour;
-        if (this.white) colour = "W";
-        else colour = "B";
-        return colour + "Q";
+        return white ? "WQ" : "BQ";
     }
 }
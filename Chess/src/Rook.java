@@ -14,7 +14,7 @@ public class Rook extends Piece{
      * @param white {@code true} if the rook is white, {@code false} if black
      */
     Rook(boolean white){
-        super(true, white);
+        super(true, white, Bitboards.ROOK);
     }
 
     /**
@@ -47,9 +47,6 @@ public class Rook extends Piece{
      */
     @Override
     public String toString() {
-        String colour;
-        if (this.white) colour = "W";
-        else colour = "B";
-        return colour + "R";
+        return white ? "WR" : "BR";
     }
 }
@@ -0,0 +1,215 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Memory-mapped endgame tablebases built by {@link TablebaseGenerator}, probed in constant time.
+ * <p>
+ * Each table file, named after its material signature such as {@code KQvK.tb}, holds one byte per
+ * position. The index of a position is the side to move (0 for white) followed by six bits per
+ * piece giving its square, with the pieces in signature order: white then black, each in the
+ * order {@code K Q R B N P}. A probe builds that index from the bitboards and reads one byte of
+ * the mapped file, so nothing is loaded onto the heap and the pages are shared by every JVM
+ * probing the same tables.
+ * <p>
+ * A value is {@link #DRAW}, a win for the side to move in {@code value} plies (between 1 and
+ * {@link #LOSS} - 1), a loss in {@code value - LOSS} plies, or {@link #INVALID} for positions
+ * that cannot occur.
+ */
+public class Tablebase {
+
+    // most pieces, kings included, a table can hold
+    static final int MAX_PIECES = 4;
+
+    // returned by probe when no table covers the position
+    static final int NONE = -1;
+
+    // stored values, wins are 1 to LOSS - 1 plies
+    static final int DRAW = 0;
+    static final int LOSS = 128;
+    static final int INVALID = 255;
+
+    // signature letters by piece type, as in FEN
+    private static final String LETTERS = "PNBRQK";
+
+    // order of the piece types within each side of a signature
+    private static final int[] ORDER = {Bitboards.KING, Bitboards.QUEEN, Bitboards.ROOK,
+            Bitboards.BISHOP, Bitboards.HORSE, Bitboards.PAWN};
+
+    // mapped tables indexed by material key, see material
+    private final ByteBuffer[] tables = new ByteBuffer[1 << (4 * MAX_PIECES)];
+
+    /**
+     * Maps every table file found in a directory. Files are mapped once, so probes never block.
+     *
+     * @param directory the directory holding {@code .tb} files
+     * @throws IOException if the directory or a table cannot be read
+     */
+    Tablebase(Path directory) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.tb")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                int material = material(name.substring(0, name.length() - 3));
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                    if (channel.size() != 2L << (6 * types(material).length)) throw new IOException("wrong table size: " + file);
+                    tables[material] = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                }
+            }
+        }
+    }
+
+    /**
+     * Looks up the position on a board.
+     *
+     * @param board the position, not modified
+     * @return the stored value for the side to move, or {@link #NONE} if no table covers the position
+     */
+    int probe(Board board) {
+        if (Long.bitCount(board.occupied) > MAX_PIECES) return NONE;
+        int material = 0;
+        int index = board.whiteToMove ? 0 : 1;
+        int shift = 0;
+        for (int colour = 0; colour < 2; colour++) {
+            for (int type : ORDER) {
+                long remaining = board.pieces[Bitboards.index(type, colour == 0)];
+                while (remaining != 0) {
+                    material |= code(type, colour == 0) << shift;
+                    shift += 4;
+                    index = index << 6 | Long.numberOfTrailingZeros(remaining);
+                    remaining &= remaining - 1;
+                }
+            }
+        }
+        ByteBuffer table = tables[material];
+        return table == null ? NONE : table.get(index) & 0xFF;
+    }
+
+    /**
+     * @param value a stored value
+     * @return {@code true} if the side to move wins
+     */
+    static boolean isWin(int value) {
+        return value > DRAW && value < LOSS;
+    }
+
+    /**
+     * @param value a stored value
+     * @return {@code true} if the side to move loses
+     */
+    static boolean isLoss(int value) {
+        return value >= LOSS && value < INVALID;
+    }
+
+    /**
+     * @param value a stored win or loss
+     * @return the number of plies until mate
+     */
+    static int plies(int value) {
+        return value >= LOSS ? value - LOSS : value;
+    }
+
+    /**
+     * Converts a signature such as {@code KRvKN} to its material key: four bits per piece in
+     * signature order, holding the piece type plus one, plus six for black pieces.
+     *
+     * @param signature the white pieces, {@code v} and the black pieces
+     * @return the material key
+     * @throws IllegalArgumentException if the signature is malformed, not in signature order,
+     *                                  lacks a king or has more than {@link #MAX_PIECES} pieces
+     */
+    static int material(String signature) {
+        int split = signature.indexOf('v');
+        if (split < 0 || signature.length() - 1 > MAX_PIECES) throw new IllegalArgumentException("bad signature " + signature);
+        int material = 0;
+        int shift = 0;
+        int previous = 0;
+        for (int i = 0; i < signature.length(); i++) {
+            if (i == split) {
+                previous = 0;
+                continue;
+            }
+            int type = LETTERS.indexOf(signature.charAt(i));
+            if (type < 0) throw new IllegalArgumentException("bad piece in signature " + signature);
+            int rank = rank(type);
+            boolean first = i == 0 || i == split + 1;
+            if (first != (type == Bitboards.KING) || rank < previous) {
+                throw new IllegalArgumentException("signature must list each side as K then Q R B N P: " + signature);
+            }
+            previous = rank;
+            material |= code(type, i < split) << shift;
+            shift += 4;
+        }
+        if (split == 0 || split == signature.length() - 1) throw new IllegalArgumentException("both sides need a king: " + signature);
+        return material;
+    }
+
+    /**
+     * Converts a material key back to its signature.
+     *
+     * @param material the material key
+     * @return the signature, e.g. {@code KQvK}
+     */
+    static String signature(int material) {
+        StringBuilder white = new StringBuilder();
+        StringBuilder black = new StringBuilder();
+        int[] types = types(material);
+        boolean[] colours = colours(material);
+        for (int i = 0; i < types.length; i++) {
+            (colours[i] ? white : black).append(LETTERS.charAt(types[i]));
+        }
+        return white + "v" + black;
+    }
+
+    /**
+     * Returns the key of the material left after the piece at position {@code piece} of the
+     * signature is captured, keeping the order of the other pieces.
+     */
+    static int without(int material, int piece) {
+        int low = material & ((1 << (4 * piece)) - 1);
+        return low | (material >>> (4 * (piece + 1))) << (4 * piece);
+    }
+
+    /**
+     * @return the piece types of a material key in signature order
+     */
+    static int[] types(int material) {
+        int[] types = new int[count(material)];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = ((material >>> (4 * i)) & 15) - 1;
+            if (types[i] >= Bitboards.TYPES) types[i] -= Bitboards.TYPES;
+        }
+        return types;
+    }
+
+    /**
+     * @return the colours of the pieces of a material key in signature order, {@code true} for white
+     */
+    static boolean[] colours(int material) {
+        boolean[] white = new boolean[count(material)];
+        for (int i = 0; i < white.length; i++) {
+            white[i] = ((material >>> (4 * i)) & 15) <= Bitboards.TYPES;
+        }
+        return white;
+    }
+
+    private static int count(int material) {
+        int count = 0;
+        while (material >>> (4 * count) != 0) count++;
+        return count;
+    }
+
+    private static int rank(int type) {
+        for (int i = 0; i < ORDER.length; i++) {
+            if (ORDER[i] == type) return i;
+        }
+        return ORDER.length;
+    }
+
+    private static int code(int type, boolean white) {
+        return type + 1 + (white ? 0 : Bitboards.TYPES);
+    }
+}
@@ -0,0 +1,373 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Builds endgame tablebases by retrograde analysis for up to {@link Tablebase#MAX_PIECES} pieces.
+ * <p>
+ * A table covers one material signature, such as {@code KQvK} (white king and queen against the
+ * black king), and holds one byte per position: every placement of its pieces on the 64 squares
+ * with either side to move, indexed as described in {@link Tablebase}. Each byte is the distance
+ * to mate in plies for the side to move, a draw, or a mark for positions that cannot occur.
+ * <p>
+ * Positions are solved in passes. The first pass marks impossible positions, checkmates and
+ * stalemates. Pass {@code k} then finds the wins in {@code k} plies, positions with a move to a
+ * loss in {@code k - 1}, and the losses in {@code k} plies, positions whose moves all lead to
+ * wins in at most {@code k - 1}. A pass only reads values from earlier passes, so the positions
+ * are split into chunks solved in parallel without locks. Passes stop once one finds nothing new,
+ * and whatever is still unsolved is a draw.
+ * <p>
+ * Moves follow the rules of {@code Board}: the piece movements of {@code King}, {@code Queen},
+ * {@code Rook}, {@code Bishop}, {@code Horse} and {@code Pawn} as encoded in {@link Attacks},
+ * a pawn on its starting row may advance two squares, and there is no promotion, castling or en
+ * passant. A capture leads into the table of the remaining pieces, which is built first.
+ */
+public class TablebaseGenerator {
+
+    // positions solved by one task
+    private static final int CHUNK = 1 << 16;
+
+    private final ExecutorService pool;
+    private final Map<Integer, Table> tables = new HashMap<>();
+
+    /**
+     * The pieces of one signature and the solved values of its positions.
+     */
+    private static final class Table {
+        final int pieces;
+        final int[] types;
+        final boolean[] white;
+        final byte[] values;
+        // table reached by capturing each piece, null for the kings
+        final Table[] afterCapture;
+
+        Table(int material) {
+            types = Tablebase.types(material);
+            white = Tablebase.colours(material);
+            pieces = types.length;
+            values = new byte[2 << (6 * pieces)];
+            afterCapture = new Table[pieces];
+        }
+    }
+
+    /**
+     * Per task scratch space for decoding positions.
+     */
+    private static final class Scratch {
+        final int[] squares = new int[Tablebase.MAX_PIECES];
+        final int[] moved = new int[Tablebase.MAX_PIECES];
+        // state of the position being solved, see value
+        boolean anyMove;
+        boolean allWins;
+    }
+
+    /**
+     * Creates a generator solving positions on a fixed number of threads.
+     *
+     * @param threads the number of worker threads
+     */
+    TablebaseGenerator(int threads) {
+        pool = Executors.newFixedThreadPool(threads);
+    }
+
+    /**
+     * Builds the table for a signature and every table it depends on, writing each one to
+     * {@code <signature>.tb} in the directory and printing a summary line per table.
+     *
+     * @param signature the material, e.g. {@code KRvK} or {@code KQvKR}
+     * @param directory the directory receiving the table files
+     * @param threads   the number of worker threads
+     * @throws IOException if a table cannot be written
+     */
+    static void run(String signature, Path directory, int threads) throws IOException {
+        TablebaseGenerator generator = new TablebaseGenerator(threads);
+        try {
+            Files.createDirectories(directory);
+            generator.build(Tablebase.material(signature), directory);
+        } finally {
+            generator.pool.shutdown();
+        }
+    }
+
+    /**
+     * Returns the solved table for a material key, building it and its dependencies if needed.
+     */
+    private Table build(int material, Path directory) throws IOException {
+        Table table = tables.get(material);
+        if (table != null) return table;
+
+        table = new Table(material);
+        for (int i = 0; i < table.pieces; i++) {
+            if (table.types[i] != Bitboards.KING) table.afterCapture[i] = build(Tablebase.without(material, i), directory);
+        }
+
+        long start = System.nanoTime();
+        Table solving = table;
+        int found = runPass(table, chunk -> initialise(solving, chunk));
+        int longest = 0;
+        for (int pass = 1; found > 0; pass++) {
+            if (pass >= Tablebase.LOSS - 1) throw new IllegalStateException("mate too long for " + Tablebase.signature(material));
+            int plies = pass;
+            found = runPass(table, chunk -> solve(solving, chunk, plies));
+            if (found > 0) longest = pass;
+        }
+        tables.put(material, table);
+
+        long wins = 0;
+        long losses = 0;
+        long draws = 0;
+        for (byte value : table.values) {
+            int v = value & 0xFF;
+            if (Tablebase.isWin(v)) wins++;
+            else if (Tablebase.isLoss(v)) losses++;
+            else if (v == Tablebase.DRAW) draws++;
+        }
+        Files.write(directory.resolve(Tablebase.signature(material) + ".tb"), table.values);
+        System.out.printf("%s: %d positions, %d wins, %d losses, %d draws, longest mate %d plies, %d ms%n",
+                Tablebase.signature(material), table.values.length, wins, losses, draws, longest,
+                (System.nanoTime() - start) / 1_000_000);
+        return table;
+    }
+
+    /**
+     * One pass over a chunk of positions, returning how many were solved.
+     */
+    private interface Pass {
+        int run(int chunk);
+    }
+
+    /**
+     * Runs a pass over every chunk of a table on the pool.
+     */
+    private int runPass(Table table, Pass pass) {
+        List<Future<Integer>> results = new ArrayList<>();
+        int chunks = (table.values.length + CHUNK - 1) / CHUNK;
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            int index = chunk;
+            results.add(pool.submit(() -> pass.run(index)));
+        }
+        int found = 0;
+        try {
+            for (Future<Integer> result : results) {
+                found += result.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("tablebase generation failed", e.getCause());
+        }
+        return found;
+    }
+
+    /**
+     * Marks impossible positions, checkmates and stalemates in a chunk, returning the checkmates.
+     */
+    private int initialise(Table table, int chunk) {
+        Scratch scratch = new Scratch();
+        int found = 0;
+        for (int index = chunk * CHUNK; index < Math.min(table.values.length, (chunk + 1) * CHUNK); index++) {
+            int side = decode(table, index, scratch.squares);
+            if (!possible(table, side, scratch.squares)) {
+                table.values[index] = (byte) Tablebase.INVALID;
+            } else if (!hasMove(table, side, scratch)) {
+                boolean mated = inCheck(table, side == 0, scratch.squares, -1);
+                table.values[index] = (byte) (mated ? Tablebase.LOSS : Tablebase.DRAW);
+                if (mated) found++;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Finds the wins and losses in exactly {@code plies} plies among the unsolved positions of a chunk.
+     */
+    private int solve(Table table, int chunk, int plies) {
+        Scratch scratch = new Scratch();
+        int found = 0;
+        for (int index = chunk * CHUNK; index < Math.min(table.values.length, (chunk + 1) * CHUNK); index++) {
+            if (table.values[index] != Tablebase.DRAW) continue;
+            int side = decode(table, index, scratch.squares);
+            int value = value(table, side, scratch, plies);
+            if (value != Tablebase.DRAW) {
+                table.values[index] = (byte) value;
+                found++;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Decodes a position index into the squares of the pieces, returning the side to move.
+     */
+    private static int decode(Table table, int index, int[] squares) {
+        for (int i = table.pieces - 1; i >= 0; i--) {
+            squares[i] = index & 63;
+            index >>>= 6;
+        }
+        return index;
+    }
+
+    /**
+     * Checks a placement can occur in a game: no shared squares, no pawn on its own back row and
+     * the side that just moved not left in check.
+     */
+    private static boolean possible(Table table, int side, int[] squares) {
+        long occupied = 0;
+        for (int i = 0; i < table.pieces; i++) {
+            long bit = Bitboards.bit(squares[i]);
+            if ((occupied & bit) != 0) return false;
+            occupied |= bit;
+            int row = squares[i] >> 3;
+            if (table.types[i] == Bitboards.PAWN && row == (table.white[i] ? 0 : 7)) return false;
+        }
+        return !inCheck(table, side != 0, squares, -1);
+    }
+
+    /**
+     * Checks whether the king of one side is attacked, ignoring a captured piece.
+     *
+     * @param white    the side whose king is examined
+     * @param squares  the squares of the pieces
+     * @param captured the index of a piece no longer on the board, or -1
+     */
+    private static boolean inCheck(Table table, boolean white, int[] squares, int captured) {
+        long occupied = 0;
+        int king = -1;
+        for (int i = 0; i < table.pieces; i++) {
+            if (i == captured) continue;
+            occupied |= Bitboards.bit(squares[i]);
+            if (table.types[i] == Bitboards.KING && table.white[i] == white) king = squares[i];
+        }
+        long kingBit = Bitboards.bit(king);
+        for (int i = 0; i < table.pieces; i++) {
+            if (i == captured || table.white[i] == white) continue;
+            if ((attacks(table.types[i], table.white[i], squares[i], occupied) & kingBit) != 0) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the squares a piece attacks, for pawns only the diagonal captures.
+     */
+    private static long attacks(int type, boolean white, int square, long occupied) {
+        return switch (type) {
+            case Bitboards.PAWN -> Attacks.PAWN[white ? 0 : 1][square];
+            case Bitboards.HORSE -> Attacks.HORSE[square];
+            case Bitboards.BISHOP -> Attacks.bishop(square, occupied);
+            case Bitboards.ROOK -> Attacks.rook(square, occupied);
+            case Bitboards.QUEEN -> Attacks.queen(square, occupied);
+            case Bitboards.KING -> Attacks.KING[square];
+            default -> 0;
+        };
+    }
+
+    /**
+     * Returns the destination squares of a piece, with pawn advances and captures.
+     */
+    private static long targets(Table table, int piece, int[] squares, long own, long enemy) {
+        int square = squares[piece];
+        boolean white = table.white[piece];
+        long occupied = own | enemy;
+        if (table.types[piece] != Bitboards.PAWN) return attacks(table.types[piece], white, square, occupied) & ~own;
+
+        long targets = Attacks.PAWN[white ? 0 : 1][square] & enemy;
+        int step = white ? 8 : -8;
+        int to = square + step;
+        if (to >= 0 && to < 64 && (occupied & Bitboards.bit(to)) == 0) {
+            targets |= Bitboards.bit(to);
+            int jump = to + step;
+            if (square >> 3 == (white ? 1 : 6) && (occupied & Bitboards.bit(jump)) == 0) targets |= Bitboards.bit(jump);
+        }
+        return targets;
+    }
+
+    /**
+     * Checks whether the side to move has a legal move.
+     */
+    private static boolean hasMove(Table table, int side, Scratch scratch) {
+        return forEachMove(table, side, scratch, (captured, squares) -> true);
+    }
+
+    /**
+     * Visits a legal move, given the piece it captures or -1 and the squares after the move.
+     * Returning {@code true} stops the visit.
+     */
+    private interface MoveVisitor {
+        boolean visit(int captured, int[] squares);
+    }
+
+    /**
+     * Plays every legal move of the side to move on the scratch squares, until the visitor stops.
+     *
+     * @return {@code true} if the visitor stopped early
+     */
+    private static boolean forEachMove(Table table, int side, Scratch scratch, MoveVisitor visitor) {
+        boolean white = side == 0;
+        int[] squares = scratch.squares;
+        int[] moved = scratch.moved;
+        long own = 0;
+        long enemy = 0;
+        for (int i = 0; i < table.pieces; i++) {
+            if (table.white[i] == white) own |= Bitboards.bit(squares[i]);
+            else enemy |= Bitboards.bit(squares[i]);
+        }
+
+        for (int piece = 0; piece < table.pieces; piece++) {
+            if (table.white[piece] != white) continue;
+            long targets = targets(table, piece, squares, own, enemy);
+            while (targets != 0) {
+                int to = Long.numberOfTrailingZeros(targets);
+                targets &= targets - 1;
+                int captured = -1;
+                for (int i = 0; i < table.pieces; i++) {
+                    moved[i] = squares[i];
+                    if (squares[i] == to && table.white[i] != white) captured = i;
+                }
+                moved[piece] = to;
+                if (inCheck(table, white, moved, captured)) continue;
+                if (visitor.visit(captured, moved)) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Solves a position for pass {@code plies}: a win if a move reaches a loss in {@code plies - 1},
+     * a loss if every move reaches a win in fewer than {@code plies}, otherwise still unsolved.
+     */
+    private static int value(Table table, int side, Scratch scratch, int plies) {
+        scratch.anyMove = false;
+        scratch.allWins = true;
+        boolean win = forEachMove(table, side, scratch, (captured, squares) -> {
+            scratch.anyMove = true;
+            int child = child(table, side ^ 1, captured, squares);
+            if (Tablebase.isLoss(child) && child - Tablebase.LOSS == plies - 1) return true;
+            if (!Tablebase.isWin(child) || child >= plies) scratch.allWins = false;
+            return false;
+        });
+        if (win) return plies;
+        // a stalemate has no moves and stays a draw
+        return scratch.anyMove && scratch.allWins ? Tablebase.LOSS + plies : Tablebase.DRAW;
+    }
+
+    /**
+     * Looks up the value of the position after a move, in the table of the remaining pieces.
+     */
+    private static int child(Table table, int side, int captured, int[] squares) {
+        Table target = captured < 0 ? table : table.afterCapture[captured];
+        int index = side;
+        for (int i = 0; i < table.pieces; i++) {
+            if (i != captured) index = index << 6 | squares[i];
+        }
+        return target.values[index] & 0xFF;
+    }
+}
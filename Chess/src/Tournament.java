@@ -0,0 +1,397 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Headless self-play match between two engine configurations, stopped early by a sequential
+ * probability ratio test (SPRT).
+ * <p>
+ * Games are played in pairs from the same random opening, once with each configuration as
+ * white, so an unbalanced opening cannot favour either side. A pool of worker threads, one per
+ * core by default, plays the pairs; each worker keeps its own board and one {@link Engine} per
+ * configuration, so a game allocates nothing beyond the engines' first use. Running more games
+ * at once than there are cores would only make the engines share cores and lose time on the
+ * clock, so the pool size is the number of games in play.
+ * <p>
+ * Every game gets a clock of {@code base} seconds plus an increment per move, split into
+ * thinking times as in {@link Uci}, and a side whose clock runs out loses. Without a time
+ * control the configurations search to their fixed depths. A game also ends on checkmate or
+ * stalemate, on a repeated position, when only the kings are left, or as a draw after
+ * {@code maxplies} plies.
+ * <p>
+ * One line per game is written to standard output as results arrive. After every pair the
+ * log-likelihood ratio of the hypotheses that A is {@code elo0} or {@code elo1} stronger than B
+ * is updated, using the normal approximation of the win, draw and loss distribution. The match
+ * stops once it crosses either bound set by the error rates {@code alpha} and {@code beta}, or
+ * after {@code games} games. The games per minute, the Elo difference with its 95% interval and
+ * the ratio are printed to standard error every few seconds and at the end.
+ */
+public class Tournament {
+
+    // seconds between progress lines
+    private static final int REPORT_SECONDS = 5;
+
+    // game results from white's side
+    private static final int WHITE_WINS = 0;
+    private static final int DRAW = 1;
+    private static final int BLACK_WINS = 2;
+
+    private static final String[] RESULTS = {"1-0", "1/2-1/2", "0-1"};
+
+    /**
+     * One engine configuration, given on the command line as comma separated {@code key=value}
+     * pairs: {@code depth}, {@code hash} in MB, {@code book} and {@code tb} for a tablebase directory.
+     */
+    static final class Player {
+        final String name;
+        int depth = Engine.MAX_PLY;
+        int hash = 16;
+        OpeningBook book;
+        Tablebase tablebase;
+
+        /**
+         * @param spec the configuration, e.g. {@code depth=5,hash=32}
+         * @throws IOException              if the book or tablebases cannot be opened
+         * @throws IllegalArgumentException if a key is unknown or a value malformed
+         */
+        Player(String spec) throws IOException {
+            name = spec;
+            for (String option : spec.split(",")) {
+                if (option.isEmpty()) continue;
+                int split = option.indexOf('=');
+                if (split < 0) throw new IllegalArgumentException("expected key=value: " + option);
+                String value = option.substring(split + 1);
+                switch (option.substring(0, split)) {
+                    case "depth" -> depth = Integer.parseInt(value);
+                    case "hash" -> hash = Integer.parseInt(value);
+                    case "book" -> book = new OpeningBook(Path.of(value));
+                    case "tb" -> tablebase = new Tablebase(Path.of(value));
+                    default -> throw new IllegalArgumentException("unknown engine option: " + option);
+                }
+            }
+        }
+
+        Engine newEngine() {
+            Engine engine = new Engine(new TranspositionTable(hash, TranspositionTable.Replacement.DEPTH_PREFERRED));
+            if (tablebase != null) engine.setTablebase(tablebase);
+            return engine;
+        }
+    }
+
+    /**
+     * Per thread game state, reused for every game the thread plays.
+     */
+    private final class Worker {
+        final Board board = new Board();
+        final int[] moves = new int[Board.MAX_MOVES];
+        final Engine[] engines = {first.newEngine(), second.newEngine()};
+        final Random random = new Random();
+    }
+
+    /**
+     * Outcome of one game, from white's side.
+     */
+    private static final class Game {
+        boolean firstIsWhite;
+        int result;
+        String reason;
+        int plies;
+
+        /**
+         * @return the points scored by the first configuration, counted in half points
+         */
+        int firstHalfPoints() {
+            if (result == DRAW) return 1;
+            return (result == WHITE_WINS) == firstIsWhite ? 2 : 0;
+        }
+    }
+
+    private final Player first;
+    private final Player second;
+    private final long baseMillis;
+    private final long incrementMillis;
+    private final int openingPlies;
+    private final int maxPlies;
+    private final long seed;
+    private final ThreadLocal<Worker> workers = ThreadLocal.withInitial(Worker::new);
+
+    // set once the test has concluded, games in progress are abandoned
+    private volatile boolean stopped;
+
+    private Tournament(Player first, Player second, long baseMillis, long incrementMillis,
+                       int openingPlies, int maxPlies, long seed) {
+        this.first = first;
+        this.second = second;
+        this.baseMillis = baseMillis;
+        this.incrementMillis = incrementMillis;
+        this.openingPlies = openingPlies;
+        this.maxPlies = maxPlies;
+        this.seed = seed;
+    }
+
+    /**
+     * Runs a match from command line arguments: the two configurations followed by optional
+     * {@code key=value} settings {@code games} (the most to play, 20000), {@code threads} (the
+     * cores), {@code tc} ({@code base+increment} in seconds, none), {@code elo0} (0), {@code elo1}
+     * (5), {@code alpha} (0.05), {@code beta} (0.05), {@code openings} (random plies, 8),
+     * {@code maxplies} (400) and {@code seed}.
+     *
+     * @param args the configurations and settings
+     * @throws IOException              if a book or tablebase cannot be opened or the output written
+     * @throws IllegalArgumentException if an argument is malformed
+     */
+    static void run(String[] args) throws IOException {
+        if (args.length < 2) throw new IllegalArgumentException("usage: sprt <engine a> <engine b> [key=value ...]");
+        int games = 20_000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long base = 0;
+        long increment = 0;
+        double elo0 = 0;
+        double elo1 = 5;
+        double alpha = 0.05;
+        double beta = 0.05;
+        int openings = 8;
+        int maxPlies = 400;
+        long seed = System.nanoTime();
+        for (int i = 2; i < args.length; i++) {
+            int split = args[i].indexOf('=');
+            if (split < 0) throw new IllegalArgumentException("expected key=value: " + args[i]);
+            String value = args[i].substring(split + 1);
+            switch (args[i].substring(0, split)) {
+                case "games" -> games = Integer.parseInt(value);
+                case "threads" -> threads = Integer.parseInt(value);
+                case "tc" -> {
+                    int plus = value.indexOf('+');
+                    base = (long) (Double.parseDouble(plus < 0 ? value : value.substring(0, plus)) * 1000);
+                    increment = plus < 0 ? 0 : (long) (Double.parseDouble(value.substring(plus + 1)) * 1000);
+                }
+                case "elo0" -> elo0 = Double.parseDouble(value);
+                case "elo1" -> elo1 = Double.parseDouble(value);
+                case "alpha" -> alpha = Double.parseDouble(value);
+                case "beta" -> beta = Double.parseDouble(value);
+                case "openings" -> openings = Integer.parseInt(value);
+                case "maxplies" -> maxPlies = Integer.parseInt(value);
+                case "seed" -> seed = Long.parseLong(value);
+                default -> throw new IllegalArgumentException("unknown setting: " + args[i]);
+            }
+        }
+        Player a = new Player(args[0]);
+        Player b = new Player(args[1]);
+        if (base == 0 && (a.depth >= Engine.MAX_PLY || b.depth >= Engine.MAX_PLY)) {
+            throw new IllegalArgumentException("without tc=base+increment both engines need a depth");
+        }
+        new Tournament(a, b, base, increment, openings, maxPlies, seed).play(games, threads, elo0, elo1, alpha, beta);
+    }
+
+    private void play(int games, int threads, double elo0, double elo1, double alpha, double beta) throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CompletionService<Game[]> results = new ExecutorCompletionService<>(pool);
+        double lower = Math.log(beta / (1 - alpha));
+        double upper = Math.log((1 - beta) / alpha);
+        int pairs = (games + 1) / 2;
+        long[] wdl = new long[3];
+        long played = 0;
+        double llr = 0;
+        long start = System.nanoTime();
+        long nextReport = start + REPORT_SECONDS * 1_000_000_000L;
+
+        System.err.printf("A: %s%nB: %s%nSPRT elo0 %.1f elo1 %.1f alpha %.3f beta %.3f, bounds [%.2f, %.2f], seed %d%n",
+                first.name, second.name, elo0, elo1, alpha, beta, lower, upper, seed);
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.US_ASCII), 1 << 16);
+        try {
+            // keep a few pairs queued per thread, so the pool never idles and stopping wastes little
+            int submitted = 0;
+            for (; submitted < Math.min(pairs, threads * 2); submitted++) submit(results, submitted);
+
+            for (int finished = 0; finished < submitted; finished++) {
+                Game[] pair = take(results);
+                if (pair == null) continue;
+                for (Game game : pair) {
+                    played++;
+                    int points = game.firstHalfPoints();
+                    wdl[points == 2 ? 0 : points == 1 ? 1 : 2]++;
+                    out.write(played + "\t" + (game.firstIsWhite ? "A\tB\t" : "B\tA\t") + RESULTS[game.result]
+                            + "\t" + game.reason + "\t" + game.plies + "\n");
+                }
+                out.flush();
+                llr = llr(wdl[0], wdl[1], wdl[2], elo0, elo1);
+                if (llr <= lower || llr >= upper) {
+                    stopped = true;
+                    break;
+                }
+                if (submitted < pairs) submit(results, submitted++);
+                if (System.nanoTime() >= nextReport) {
+                    report(wdl, llr, lower, upper, start);
+                    nextReport += REPORT_SECONDS * 1_000_000_000L;
+                }
+            }
+        } finally {
+            stopped = true;
+            pool.shutdownNow();
+            out.flush();
+        }
+
+        report(wdl, llr, lower, upper, start);
+        String verdict = llr >= upper ? "H1 accepted, A is stronger by at least elo1"
+                : llr <= lower ? "H0 accepted, A is not stronger by elo1"
+                : "inconclusive after " + played + " games";
+        System.err.println(verdict);
+    }
+
+    private void submit(CompletionService<Game[]> results, int pair) {
+        results.submit(() -> playPair(pair));
+    }
+
+    /**
+     * Waits for the next finished pair.
+     *
+     * @return the pair, or {@code null} if it was abandoned because the test concluded
+     */
+    private static Game[] take(CompletionService<Game[]> results) throws IOException {
+        try {
+            return results.take().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while playing", e);
+        } catch (ExecutionException e) {
+            throw new IOException("game failed", e.getCause());
+        }
+    }
+
+    /**
+     * Plays both colours of one random opening on the calling worker thread.
+     *
+     * @return the two games, or {@code null} if the match stopped first
+     */
+    private Game[] playPair(int pair) {
+        Worker worker = workers.get();
+        Game[] games = new Game[2];
+        for (int i = 0; i < 2; i++) {
+            worker.random.setSeed(seed + pair);
+            games[i] = playGame(worker, i == 0);
+            if (games[i] == null) return null;
+        }
+        return games;
+    }
+
+    /**
+     * Plays one game from a random opening chosen by the worker's random source.
+     *
+     * @return the game, or {@code null} if the match stopped first
+     */
+    private Game playGame(Worker worker, boolean firstIsWhite) {
+        Board board = worker.board;
+        board.setBoard();
+        for (int ply = 0; ply < openingPlies; ply++) {
+            int count = board.generateMoves(board.whiteToMove, worker.moves);
+            if (count == 0) break;
+            board.makeMove(worker.moves[worker.random.nextInt(count)]);
+        }
+
+        // games are independent trials of the test, nothing may carry over from the worker's last game
+        worker.engines[0].newGame();
+        worker.engines[1].newGame();
+
+        Game game = new Game();
+        game.firstIsWhite = firstIsWhite;
+        long[] clocks = {baseMillis, baseMillis};
+        while (true) {
+            if (stopped) return null;
+            int side = board.whiteToMove ? 0 : 1;
+            if (!board.hasLegalMove()) {
+                boolean mate = board.inCheck();
+                return finish(game, board, mate ? (side == 0 ? BLACK_WINS : WHITE_WINS) : DRAW, mate ? "checkmate" : "stalemate");
+            }
+            if (board.isRepetition()) return finish(game, board, DRAW, "repetition");
+            if (Long.bitCount(board.occupied) == 2) return finish(game, board, DRAW, "insufficient material");
+            if (board.ply >= maxPlies) return finish(game, board, DRAW, "move limit");
+
+            boolean firstToMove = (side == 0) == firstIsWhite;
+            Player player = firstToMove ? first : second;
+            Engine engine = worker.engines[firstToMove ? 0 : 1];
+            long start = System.nanoTime();
+            int move = player.book != null ? player.book.move(board, worker.random) : 0;
+            if (move == 0) {
+                long millis = baseMillis > 0 ? Uci.moveMillis(clocks[side], incrementMillis, 30) : 0;
+                move = engine.search(board, player.depth, millis);
+            }
+            if (baseMillis > 0) {
+                clocks[side] -= (System.nanoTime() - start) / 1_000_000;
+                if (clocks[side] < 0) return finish(game, board, side == 0 ? BLACK_WINS : WHITE_WINS, "time forfeit");
+                clocks[side] += incrementMillis;
+            }
+            board.makeMove(move);
+        }
+    }
+
+    private static Game finish(Game game, Board board, int result, String reason) {
+        game.result = result;
+        game.reason = reason;
+        game.plies = board.ply;
+        return game;
+    }
+
+    /**
+     * Prints the games played, the score, the Elo estimate, the ratio and the throughput.
+     */
+    private static void report(long[] wdl, double llr, double lower, double upper, long start) {
+        long games = wdl[0] + wdl[1] + wdl[2];
+        double minutes = Math.max(1, System.nanoTime() - start) / 60e9;
+        double score = games == 0 ? 0.5 : (wdl[0] + wdl[1] / 2.0) / games;
+        double margin = games == 0 ? 0 : 1.96 * Math.sqrt(variance(wdl[0], wdl[1], wdl[2]) / games);
+        System.err.printf("games %d (+%d =%d -%d), elo %.1f [%.1f, %.1f], LLR %.2f [%.2f, %.2f], %.1f games/min%n",
+                games, wdl[0], wdl[1], wdl[2], elo(score), elo(score - margin), elo(score + margin),
+                llr, lower, upper, games / minutes);
+    }
+
+    /**
+     * Log-likelihood ratio of the hypotheses that the expected score matches an Elo difference of
+     * {@code elo1} rather than {@code elo0}, treating the mean score of the games as normally
+     * distributed with the variance observed so far.
+     *
+     * @return the ratio, 0 until both a decisive game and a different result have been seen
+     */
+    static double llr(long wins, long draws, long losses, double elo0, double elo1) {
+        long games = wins + draws + losses;
+        double variance = variance(wins, draws, losses);
+        if (games == 0 || variance == 0) return 0;
+        double score = (wins + draws / 2.0) / games;
+        double score0 = expectedScore(elo0);
+        double score1 = expectedScore(elo1);
+        return games * (score1 - score0) * (2 * score - score0 - score1) / (2 * variance);
+    }
+
+    /**
+     * @return the variance of the points scored per game
+     */
+    private static double variance(long wins, long draws, long losses) {
+        long games = wins + draws + losses;
+        if (games == 0) return 0;
+        double score = (wins + draws / 2.0) / games;
+        return (wins * (1 - score) * (1 - score) + draws * (0.5 - score) * (0.5 - score) + losses * score * score) / games;
+    }
+
+    /**
+     * @return the expected score of a player {@code elo} points stronger than its opponent
+     */
+    static double expectedScore(double elo) {
+        return 1 / (1 + Math.pow(10, -elo / 400));
+    }
+
+    /**
+     * @return the Elo difference matching an expected score, clamped for all wins or all losses
+     */
+    static double elo(double score) {
+        double clamped = Math.min(Math.max(score, 1e-6), 1 - 1e-6);
+        return -400 * Math.log10(1 / clamped - 1);
+    }
+}
@@ -0,0 +1,246 @@
+import java.util.Arrays;
+
+/**
+ * Fixed size hash table of search results keyed by the Zobrist hash of a position.
+ * <p>
+ * Entries live in two parallel {@code long[]} arrays, one for the key and one for the packed
+ * data, so the table holds no objects and its memory use is exactly the configured size.
+ * The packed data word is laid out as:
+ * <pre>
+ *  bits  0-15  best move (see {@link Move})
+ *  bits 16-31  score, signed
+ *  bits 32-39  search depth
+ *  bits 40-41  bound type, {@link #EXACT}, {@link #LOWER} or {@link #UPPER}
+ *  bits 42-49  generation of the search that stored the entry
+ * </pre>
+ * A slot is chosen by the low bits of the key. When it already holds a different position the
+ * {@link Replacement} policy decides which entry is kept.
+ * <p>
+ * One table can be shared by several search threads without locks. The key array holds the
+ * key XORed with the data word, so an entry torn by two threads writing the same slot at once
+ * no longer matches its key and is treated as a miss. The statistics counters are not
+ * synchronised and are approximate while several threads use the table.
+ */
+public class TranspositionTable {
+
+    // bound types, a stored data word is never 0 as the bound is always set
+    static final int EXACT = 1;
+    static final int LOWER = 2;
+    static final int UPPER = 3;
+
+    // bytes used by one entry, a key and a data word
+    private static final int ENTRY_BYTES = 16;
+
+    /**
+     * How a store into a slot holding a different position is resolved.
+     */
+    enum Replacement {
+        // keep the deeper result, entries from older searches are always replaced
+        DEPTH_PREFERRED,
+        // the newest result always wins
+        ALWAYS
+    }
+
+    private final long[] keys;
+    private final long[] data;
+    private final int mask;
+    private final Replacement replacement;
+
+    // generation of the current search, bumped by newSearch() so stale entries can be recognised
+    private int generation;
+
+    // statistics since the last clear
+    private long probes;
+    private long hits;
+    private long collisions;
+    private long stores;
+    private long used;
+
+    /**
+     * Creates a table using at most the given amount of memory, rounded down to a power of two
+     * number of entries.
+     *
+     * @param megabytes   the memory budget in MB, at least 1
+     * @param replacement the replacement policy for occupied slots
+     */
+    TranspositionTable(int megabytes, Replacement replacement) {
+        long entries = Math.max(1, (long) megabytes) * 1024 * 1024 / ENTRY_BYTES;
+        int size = Integer.highestOneBit((int) Math.min(entries, 1 << 30));
+        keys = new long[size];
+        data = new long[size];
+        mask = size - 1;
+        this.replacement = replacement;
+    }
+
+    /**
+     * Looks up a position.
+     *
+     * @param key the Zobrist hash of the position
+     * @return the packed data word, or 0 if the position is not in the table
+     */
+    long probe(long key) {
+        probes++;
+        int slot = (int) key & mask;
+        long entry = data[slot];
+        if (entry == 0) return 0;
+        if ((keys[slot] ^ entry) != key) {
+            collisions++;
+            return 0;
+        }
+        hits++;
+        return entry;
+    }
+
+    /**
+     * Stores a search result, subject to the replacement policy.
+     *
+     * @param key   the Zobrist hash of the position
+     * @param move  the best move found, or 0 if none
+     * @param score the score, must fit in a signed 16 bit value
+     * @param depth the remaining depth the score was searched to
+     * @param bound the bound type of the score
+     */
+    void store(long key, int move, int score, int depth, int bound) {
+        int slot = (int) key & mask;
+        long old = data[slot];
+        boolean samePosition = (keys[slot] ^ old) == key;
+        if (old == 0) {
+            used++;
+        } else if (!samePosition && replacement == Replacement.DEPTH_PREFERRED
+                && generation(old) == generation && depth(old) > depth) {
+            return;
+        } else if (samePosition && move == 0) {
+            // keep the best move of an earlier search of the same position
+            move = move(old);
+        }
+        stores++;
+        long entry = (move & 0xFFFFL)
+                | ((score & 0xFFFFL) << 16)
+                | ((long) Math.min(depth, 255) << 32)
+                | ((long) bound << 40)
+                | ((long) generation << 42);
+        keys[slot] = key ^ entry;
+        data[slot] = entry;
+    }
+
+    /**
+     * Marks the start of a new search, so entries from earlier searches can be replaced first.
+     */
+    void newSearch() {
+        generation = (generation + 1) & 0xFF;
+    }
+
+    /**
+     * Empties the table and resets the statistics.
+     */
+    void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(data, 0);
+        probes = hits = collisions = stores = used = 0;
+    }
+
+    /**
+     * @param entry a packed data word returned by {@link #probe(long)}
+     * @return the best move of the entry
+     */
+    static int move(long entry) {
+        return (int) (entry & 0xFFFF);
+    }
+
+    /**
+     * @param entry a packed data word returned by {@link #probe(long)}
+     * @return the score of the entry
+     */
+    static int score(long entry) {
+        return (short) (entry >>> 16);
+    }
+
+    /**
+     * @param entry a packed data word returned by {@link #probe(long)}
+     * @return the depth the entry was searched to
+     */
+    static int depth(long entry) {
+        return (int) (entry >>> 32) & 0xFF;
+    }
+
+    /**
+     * @param entry a packed data word returned by {@link #probe(long)}
+     * @return the bound type of the entry
+     */
+    static int bound(long entry) {
+        return (int) (entry >>> 40) & 3;
+    }
+
+    private static int generation(long entry) {
+        return (int) (entry >>> 42) & 0xFF;
+    }
+
+    /**
+     * Estimates how full the table is in permille, in the way UCI {@code hashfull} reports it,
+     * by sampling the first thousand slots for entries of the current search.
+     *
+     * @return the estimated number of used slots per thousand
+     */
+    int hashfull() {
+        int sample = Math.min(1000, data.length);
+        int count = 0;
+        for (int slot = 0; slot < sample; slot++) {
+            if (data[slot] != 0 && generation(data[slot]) == generation) count++;
+        }
+        return count * 1000 / sample;
+    }
+
+    /**
+     * @return the number of slots in the table
+     */
+    int capacity() {
+        return keys.length;
+    }
+
+    /**
+     * @return the number of lookups since the last clear
+     */
+    long probes() {
+        return probes;
+    }
+
+    /**
+     * @return the number of lookups that found their position
+     */
+    long hits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of lookups that found a different position in their slot
+     */
+    long collisions() {
+        return collisions;
+    }
+
+    /**
+     * @return the number of results written to the table
+     */
+    long stores() {
+        return stores;
+    }
+
+    /**
+     * @return the fraction of slots holding an entry, between 0 and 1
+     */
+    double fillRate() {
+        return (double) used / keys.length;
+    }
+
+    /**
+     * Formats the statistics on one line for tuning output.
+     *
+     * @return the hit rate, collisions and fill rate of the table
+     */
+    @Override
+    public String toString() {
+        return String.format("tt %d MB: probes %d, hits %d (%.1f%%), collisions %d, stores %d, fill %.1f%%",
+                (long) keys.length * ENTRY_BYTES / (1024 * 1024), probes, hits,
+                probes == 0 ? 0.0 : 100.0 * hits / probes, collisions, stores, 100 * fillRate());
+    }
+}
@@ -0,0 +1,335 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Universal Chess Interface front-end, so the engine can be driven by chess GUIs and tournament managers.
+ * <p>
+ * Commands are read from standard input on the calling thread while searches run on a separate
+ * search thread, so reading input never waits for a search and {@code stop} reaches the engine
+ * straight away. The engine checks for a stop every 1024 nodes, well within a millisecond.
+ * <p>
+ * Supported commands are {@code uci}, {@code isready}, {@code setoption} (Hash, Threads, Book and TablebasePath),
+ * {@code ucinewgame}, {@code position [startpos | fen ...] [moves ...]},
+ * {@code go [depth n] [movetime ms] [wtime ms] [btime ms] [winc ms] [binc ms] [movestogo n] [infinite]},
+ * {@code stop} and {@code quit}. An {@code info} line with depth, score, nodes, nps, hashfull,
+ * time and the best move is sent after every completed iteration.
+ */
+public class Uci {
+
+    // time kept back from the clock for communication delays
+    private static final long MOVE_OVERHEAD = 30;
+
+    private final PrintStream out = new PrintStream(System.out, true, StandardCharsets.US_ASCII);
+    private final Board board = new Board();
+
+    private int hashMegabytes = 64;
+    private int threads = 1;
+    private TranspositionTable table;
+    private ParallelSearch search;
+    private OpeningBook book;
+    private Tablebase tablebase;
+    private final Random bookRandom = new Random();
+
+    private Thread searchThread;
+
+    // released by stop, an infinite search only reports its move once stopped
+    private volatile CountDownLatch stopSignal = new CountDownLatch(0);
+
+    /**
+     * Runs the UCI loop until {@code quit} or the end of standard input.
+     *
+     * @throws IOException if standard input cannot be read
+     */
+    static void run() throws IOException {
+        new Uci().loop();
+    }
+
+    private void loop() throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.US_ASCII));
+        String line;
+        while ((line = in.readLine()) != null) {
+            String[] words = line.trim().split("\\s+");
+            switch (words[0]) {
+                case "uci" -> {
+                    out.println("id name ChessCLI");
+                    out.println("id author ChessCLI contributors");
+                    out.println("option name Hash type spin default 64 min 1 max 65536");
+                    out.println("option name Threads type spin default 1 min 1 max 512");
+                    out.println("option name Book type string default <empty>");
+                    out.println("option name TablebasePath type string default <empty>");
+                    out.println("uciok");
+                }
+                case "isready" -> out.println("readyok");
+                case "setoption" -> {
+                    waitForSearch();
+                    setOption(words);
+                }
+                case "ucinewgame" -> {
+                    waitForSearch();
+                    if (search != null) search.newGame();
+                    else if (table != null) table.clear();
+                }
+                case "position" -> {
+                    waitForSearch();
+                    position(words);
+                }
+                case "go" -> {
+                    waitForSearch();
+                    go(words);
+                }
+                case "stop" -> stop();
+                case "quit" -> {
+                    stop();
+                    waitForSearch();
+                    if (search != null) search.shutdown();
+                    return;
+                }
+                default -> {
+                    // unknown commands are ignored, as the protocol requires
+                }
+            }
+        }
+        stop();
+        waitForSearch();
+        if (search != null) search.shutdown();
+    }
+
+    /**
+     * Handles {@code setoption name <name> value <value>}, the search is rebuilt on its next use.
+     */
+    private void setOption(String[] words) {
+        if (words.length < 5 || !words[1].equals("name") || !words[3].equals("value")) return;
+        if (words[2].equalsIgnoreCase("Book")) {
+            // the path is the rest of the line, it may contain spaces
+            String path = String.join(" ", Arrays.copyOfRange(words, 4, words.length));
+            try {
+                book = path.isEmpty() || path.equals("<empty>") ? null : new OpeningBook(Path.of(path));
+            } catch (IOException | InvalidPathException e) {
+                out.println("info string cannot open book " + path);
+                book = null;
+            }
+            return;
+        }
+        if (words[2].equalsIgnoreCase("TablebasePath")) {
+            String path = String.join(" ", Arrays.copyOfRange(words, 4, words.length));
+            try {
+                tablebase = path.isEmpty() || path.equals("<empty>") ? null : new Tablebase(Path.of(path));
+            } catch (IOException | IllegalArgumentException e) {
+                out.println("info string cannot open tablebases " + path);
+                tablebase = null;
+            }
+            if (search != null) search.setTablebase(tablebase);
+            return;
+        }
+        try {
+            int value = Integer.parseInt(words[4]);
+            if (words[2].equalsIgnoreCase("Hash")) {
+                hashMegabytes = Math.max(1, value);
+                table = null;
+            } else if (words[2].equalsIgnoreCase("Threads")) {
+                threads = Math.max(1, value);
+            }
+            if (search != null) search.shutdown();
+            search = null;
+        } catch (NumberFormatException e) {
+            out.println("info string invalid value " + words[4]);
+        }
+    }
+
+    /**
+     * Handles {@code position}, setting up the start position or a FEN and playing the listed moves.
+     */
+    private void position(String[] words) {
+        int i = 1;
+        if (words.length > 1 && words[1].equals("fen")) {
+            StringBuilder fen = new StringBuilder();
+            for (i = 2; i < words.length && !words[i].equals("moves"); i++) {
+                fen.append(words[i]).append(' ');
+            }
+            try {
+                board.setFen(fen, 0, fen.length() - 1);
+            } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                out.println("info string invalid fen " + fen);
+                board.setBoard();
+            }
+        } else {
+            board.setBoard();
+            i = 2;
+        }
+
+        if (i < words.length && words[i].equals("moves")) {
+            for (i++; i < words.length; i++) {
+                String text = words[i];
+                int move = 0;
+                if (text.length() >= 4) {
+                    int from = (text.charAt(1) - '1') * 8 + text.charAt(0) - 'a';
+                    int to = (text.charAt(3) - '1') * 8 + text.charAt(2) - 'a';
+                    if (from >= 0 && from < 64 && to >= 0 && to < 64) move = board.findMove(from, to);
+                }
+                if (move == 0) {
+                    out.println("info string illegal move " + text);
+                    return;
+                }
+                board.makeMove(move);
+            }
+        }
+    }
+
+    /**
+     * Parses a numeric parameter sent by the GUI. A malformed value is reported and ignored, as
+     * the protocol expects, rather than ending the engine.
+     *
+     * @param value    the text of the parameter
+     * @param fallback the value to keep if the text is not a number
+     * @return the number, or {@code fallback}
+     */
+    private long number(String value, long fallback) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            out.println("info string invalid value " + value);
+            return fallback;
+        }
+    }
+
+    /**
+     * Handles {@code go}: works out the depth and time budget and starts the search thread.
+     */
+    private void go(String[] words) {
+        int depth = Engine.MAX_PLY;
+        long moveTime = 0;
+        long time = 0;
+        long increment = 0;
+        int movesToGo = 30;
+        boolean infinite = false;
+        boolean white = board.whiteToMove;
+
+        for (int i = 1; i < words.length; i++) {
+            String value = i + 1 < words.length ? words[i + 1] : "0";
+            switch (words[i]) {
+                case "depth" -> depth = (int) Math.min(Engine.MAX_PLY, Math.max(1, number(value, depth)));
+                case "movetime" -> moveTime = number(value, moveTime);
+                case "wtime" -> time = white ? number(value, time) : time;
+                case "btime" -> time = white ? time : number(value, time);
+                case "winc" -> increment = white ? number(value, increment) : increment;
+                case "binc" -> increment = white ? increment : number(value, increment);
+                case "movestogo" -> movesToGo = (int) Math.min(Integer.MAX_VALUE, Math.max(1, number(value, movesToGo)));
+                case "infinite" -> infinite = true;
+                default -> {
+                    continue;
+                }
+            }
+            if (!words[i].equals("infinite")) i++;
+        }
+
+        long millis = 0;
+        if (moveTime > 0) {
+            millis = Math.max(1, moveTime - MOVE_OVERHEAD);
+        } else if (time > 0) {
+            millis = moveMillis(time, increment, movesToGo);
+        }
+        if (infinite) millis = 0;
+
+        // book moves are played at once, an infinite search is left to run until stopped
+        int bookMove = book != null && !infinite ? book.move(board, bookRandom) : 0;
+        if (bookMove != 0) {
+            out.println("info string book move");
+            out.println("bestmove " + Move.toString(bookMove));
+            return;
+        }
+
+        ParallelSearch parallel = search();
+        parallel.resetStop();
+        TranspositionTable hash = table;
+        CountDownLatch signal = new CountDownLatch(infinite ? 1 : 0);
+        stopSignal = signal;
+
+        parallel.main().setListener((iterationDepth, score, move, nanos) -> {
+            long nodes = parallel.nodes();
+            out.println("info depth " + iterationDepth + " score " + uciScore(score) + " nodes " + nodes
+                    + " nps " + nodes * 1_000_000_000L / Math.max(1, nanos) + " hashfull " + hash.hashfull()
+                    + " time " + nanos / 1_000_000 + (move == 0 ? "" : " pv " + Move.toString(move)));
+        });
+
+        int searchDepth = depth;
+        long budget = millis;
+        searchThread = new Thread(() -> {
+            int move = parallel.search(board, searchDepth, budget);
+            try {
+                signal.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            out.println("bestmove " + (move == 0 ? "0000" : Move.toString(move)));
+        }, "uci-search");
+        searchThread.start();
+    }
+
+    /**
+     * Stops a running search, which then reports its best move.
+     */
+    private void stop() {
+        if (search != null) search.stop();
+        stopSignal.countDown();
+    }
+
+    /**
+     * Waits for the search thread to report its move before the position or options are changed.
+     */
+    private void waitForSearch() {
+        if (searchThread == null) return;
+        try {
+            searchThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        searchThread = null;
+    }
+
+    /**
+     * Returns the search, creating it and its table with the current options when needed.
+     */
+    private ParallelSearch search() {
+        if (table == null) {
+            table = new TranspositionTable(hashMegabytes, TranspositionTable.Replacement.DEPTH_PREFERRED);
+        }
+        if (search == null) {
+            search = new ParallelSearch(threads, table);
+            search.setTablebase(tablebase);
+        }
+        return search;
+    }
+
+    /**
+     * Splits the time left on a clock into the budget for one move: an even share of the time
+     * for the moves to go plus most of the increment, never more than the clock holds.
+     *
+     * @param time      the time left in milliseconds
+     * @param increment the increment per move in milliseconds
+     * @param movesToGo the moves left until the next time control, or a guess
+     * @return the thinking time in milliseconds, at least 1
+     */
+    static long moveMillis(long time, long increment, int movesToGo) {
+        return Math.max(1, Math.min(time / movesToGo + increment * 3 / 4, time - MOVE_OVERHEAD));
+    }
+
+    /**
+     * Formats a score as UCI {@code cp <centipawns>} or {@code mate <moves>}.
+     */
+    private static String uciScore(int score) {
+        if (Math.abs(score) > Engine.MATE - Engine.MAX_PLY) {
+            int plies = Engine.MATE - Math.abs(score);
+            int moves = (plies + 1) / 2;
+            return "mate " + (score > 0 ? moves : -moves);
+        }
+        return "cp " + score;
+    }
+}
@@ -0,0 +1,49 @@
+/**
+ * Random keys for Zobrist hashing of board positions.
+ * <p>
+ * The hash of a position is the XOR of one key per piece on its square, plus the side key
+ * when black is to move. Moving a piece therefore only XORs the keys of the squares that
+ * change, which lets {@code Board} keep its hash up to date in constant time per move.
+ * <p>
+ * A pawn's first move flag is not hashed: pawns only move forward, so a pawn still on its
+ * starting row has always not yet moved and the flag follows from the piece placement.
+ */
+public final class Zobrist {
+
+    // one key per bitboard index (see Bitboards.index) and square
+    static final long[][] PIECE_SQUARE = new long[12][64];
+
+    // XORed in when black is to move
+    static final long BLACK_TO_MOVE;
+
+    static {
+        // fixed seed so hashes are stable between runs and can be stored in files
+        long seed = 0x2F0B3A49C6D27E15L;
+        for (int index = 0; index < 12; index++) {
+            for (int square = 0; square < 64; square++) {
+                seed = next(seed);
+                PIECE_SQUARE[index][square] = mix(seed);
+            }
+        }
+        BLACK_TO_MOVE = mix(next(seed));
+    }
+
+    private Zobrist() {
+    }
+
+    /**
+     * Advances the splitmix64 sequence.
+     */
+    private static long next(long seed) {
+        return seed + 0x9E3779B97F4A7C15L;
+    }
+
+    /**
+     * Splitmix64 finaliser turning a sequence value into a well mixed key.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}